@@ -0,0 +1,131 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Stream;
+
+/**
+ * 
+ * KMACXOF256 of many independent messages under one key and customization string
+ * 
+ * The (K, S) prefix is absorbed once per batch, then the messages are split into
+ * contiguous ranges over a ForkJoinPool. Each worker thread forks its own reusable
+ * context from the prefix for every message and squeezes straight into one shared
+ * output buffer, so nothing is allocated per message.
+ * 
+ * @authors Lindsay Ding, Alan Thompson, Christopher Henderson
+ *
+ */
+public class BatchHash {
+
+	/** How many messages the Stream / Iterator entry points hand to the pool at a time */
+	public static final int BATCH = 10_000;
+
+	/** Smallest range of messages a worker takes on its own */
+	static final int MIN_RANGE = 16;
+
+	// one scratch context per worker thread, overwritten from the prefix for every message
+	private static final ThreadLocal<Keccak.sha3_ctx_t> WORK = ThreadLocal.withInitial(Keccak.sha3_ctx_t::new);
+
+	/**
+	 * The throughput entry point: digests of X[0], ..., X[n-1] written back to back into out,
+	 * digest i at out[i * L/8].
+	 * @param K the key
+	 * @param X the messages
+	 * @param L output length of each digest in bits
+	 * @param S the customization string
+	 * @param out at least X.length * L/8 bytes, reused by the caller between batches
+	 * @param pool the pool the messages are hashed on
+	 */
+	public static void KMACXOF256(byte[] K, byte[][] X, int L, byte[] S, byte[] out, ForkJoinPool pool) {
+		int outLen = L / 8;
+		if ((long) X.length * outLen > out.length)
+			throw new IllegalArgumentException("output buffer holds " + out.length + " bytes, need " + (long) X.length * outLen);
+		if (X.length == 0)
+			return;
+		Keccak.sha3_ctx_t prefix = Keccak.KMACXOF256_init_cached(K, S);
+		int minRange = Math.max(MIN_RANGE, X.length / (pool.getParallelism() * 8));
+		pool.invoke(new range_task(prefix, X, outLen, out, 0, X.length, minRange));
+	}
+
+	/**
+	 * Digests of every message in X, in order, hashed on the common pool.
+	 * @return one L/8 byte digest per message
+	 * @throws ArithmeticException if the digests together exceed 2^31 - 1 bytes (use the Stream form)
+	 */
+	public static byte[][] KMACXOF256(byte[] K, byte[][] X, int L, byte[] S) {
+		int outLen = L / 8;
+		byte[] out = new byte[Math.multiplyExact(X.length, outLen)];
+		KMACXOF256(K, X, L, S, out, ForkJoinPool.commonPool());
+		byte[][] digests = new byte[X.length][];
+		for (int i = 0, off = 0; i < X.length; i++, off += outLen) {
+			digests[i] = new byte[outLen];
+			System.arraycopy(out, off, digests[i], 0, outLen);
+		}
+		return digests;
+	}
+
+	public static List<byte[]> KMACXOF256(byte[] K, List<byte[]> X, int L, byte[] S) {
+		return List.of(KMACXOF256(K, X.toArray(new byte[0][]), L, S));
+	}
+
+	/**
+	 * Digests of a stream of messages, in order. Only BATCH messages are held at a time.
+	 * @return one L/8 byte digest per message
+	 */
+	public static List<byte[]> KMACXOF256(byte[] K, Stream<byte[]> X, int L, byte[] S) {
+		return KMACXOF256(K, X.iterator(), L, S);
+	}
+
+	public static List<byte[]> KMACXOF256(byte[] K, Iterator<byte[]> X, int L, byte[] S) {
+		List<byte[]> digests = new ArrayList<>();
+		byte[][] batch = new byte[BATCH][];
+		while (X.hasNext()) {
+			int n = 0;
+			while (n < BATCH && X.hasNext())
+				batch[n++] = X.next();
+			byte[][] messages = n == BATCH ? batch : Arrays.copyOf(batch, n);
+			for (byte[] d : KMACXOF256(K, messages, L, S))
+				digests.add(d);
+		}
+		return digests;
+	}
+
+	@SuppressWarnings("serial")
+	private static final class range_task extends RecursiveAction {
+		final Keccak.sha3_ctx_t prefix;
+		final byte[][] X;
+		final byte[] out;
+		final int outLen, lo, hi, minRange;
+
+		range_task(Keccak.sha3_ctx_t prefix, byte[][] X, int outLen, byte[] out, int lo, int hi, int minRange) {
+			this.prefix = prefix;
+			this.X = X;
+			this.outLen = outLen;
+			this.out = out;
+			this.lo = lo;
+			this.hi = hi;
+			this.minRange = minRange;
+		}
+
+		@Override
+		protected void compute() {
+			if (hi - lo > minRange) {
+				int mid = (lo + hi) >>> 1;
+				invokeAll(new range_task(prefix, X, outLen, out, lo, mid, minRange),
+						new range_task(prefix, X, outLen, out, mid, hi, minRange));
+				return;
+			}
+			Keccak.sha3_ctx_t c = WORK.get();
+			// hi * outLen <= out.length was checked up front, so the offsets fit an int
+			for (int i = lo, off = Math.multiplyExact(lo, outLen); i < hi; i++, off += outLen) {
+				Keccak.sponge_copy(c, prefix);
+				Keccak.sponge_update(c, X[i], 0, X[i].length);
+				Keccak.sponge_squeeze(c, out, off, outLen);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,157 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ *
+ * Verification of many (message, signature, public key) triples at once
+ *
+ * Each signature is checked on its own (util.verifySignature), with the triples split
+ * into ranges over a ForkJoinPool. The result is one verdict per triple, so a bad
+ * item is identified directly without re-checking the rest.
+ *
+ * A randomized linear combination of the verification equations, checked with one
+ * multi-scalar multiplication, does not apply to this scheme: the signature carries
+ * h = KMACXOF256(U_x, m) rather than U, and the hash of U is not linear in U, so every
+ * U = z*G + h*V has to be computed and hashed individually.
+ *
+ * @authors Lindsay Ding, Alan Thompson, Christopher Henderson
+ *
+ */
+public class BatchVerify {
+
+	/** Smallest range of triples a worker takes on its own (a verification is about a millisecond) */
+	static final int MIN_RANGE = 4;
+
+	/**
+	 * Verify signatures already in memory.
+	 * @param m the signed messages
+	 * @param sig sig[i] is the signature of m[i]
+	 * @param V V[i] is the public key for sig[i]
+	 * @param pool the pool the signatures are verified on
+	 * @return ok[i] is true if sig[i] is a valid signature of m[i] under V[i]
+	 */
+	public static boolean[] verify(byte[][] m, byte[][] sig, Point[] V, ForkJoinPool pool) {
+		if (m.length != sig.length || m.length != V.length)
+			throw new IllegalArgumentException("need as many signatures and keys as messages");
+		boolean[] ok = new boolean[m.length];
+		if (m.length > 0)
+			pool.invoke(new range_task(m, sig, V, null, null, null, ok, 0, m.length));
+		return ok;
+	}
+
+	/**
+	 * Verify signatures already in memory on the common pool.
+	 */
+	public static boolean[] verify(byte[][] m, byte[][] sig, Point[] V) {
+		return verify(m, sig, V, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Verify signatures already in memory, with the public keys still in their file format
+	 * (util.pointDataZip). The keys go through the PublicKeyCache, so a key shared by many
+	 * triples is parsed and tabulated once. A key that does not decode fails its triple.
+	 */
+	public static boolean[] verify(byte[][] m, byte[][] sig, byte[][] keys, ForkJoinPool pool) {
+		if (m.length != sig.length || m.length != keys.length)
+			throw new IllegalArgumentException("need as many signatures and keys as messages");
+		boolean[] ok = new boolean[m.length];
+		if (m.length > 0)
+			pool.invoke(new range_task(m, sig, null, null, null, keys, ok, 0, m.length));
+		return ok;
+	}
+
+	/**
+	 * The outcome of verifyFiles. A triple that could not be read is not a forged signature,
+	 * so it is reported in errors rather than only as a false verdict.
+	 */
+	public static final class Result {
+		/** ok[i] is true if sigFiles[i] is a valid signature of files[i] under keyFiles[i] */
+		public final boolean[] ok;
+		/** errors[i] says why triple i could not be read, null if it was verified */
+		public final String[] errors;
+		/** Number of triples that could not be read */
+		public final int failed;
+
+		Result(boolean[] ok, String[] errors) {
+			int failed = 0;
+			for (String e : errors)
+				if (e != null) failed++;
+			this.ok = ok;
+			this.errors = errors;
+			this.failed = failed;
+		}
+	}
+
+	/**
+	 * Verify files: each worker reads its own data, signature and key files, so only the
+	 * triples being checked are in memory.
+	 * @param files paths of the signed files
+	 * @param sigFiles sigFiles[i] is the path of the signature of files[i]
+	 * @param keyFiles keyFiles[i] is the path of the public key for sigFiles[i]
+	 * @param pool the pool the signatures are verified on
+	 * @return the verdicts, and which triples could not be read
+	 */
+	public static Result verifyFiles(String[] files, String[] sigFiles, String[] keyFiles, ForkJoinPool pool) {
+		if (files.length != sigFiles.length || files.length != keyFiles.length)
+			throw new IllegalArgumentException("need as many signatures and keys as files");
+		boolean[] ok = new boolean[files.length];
+		String[] errors = new String[files.length];
+		if (files.length > 0)
+			pool.invoke(new range_task(null, null, null, new String[][] {files, sigFiles, keyFiles}, errors, null, ok, 0, files.length));
+		return new Result(ok, errors);
+	}
+
+	@SuppressWarnings("serial")
+	private static final class range_task extends RecursiveAction {
+		final byte[][] m, sig, keys;
+		final Point[] V;
+		final String[][] paths; // {files, sigFiles, keyFiles} when verifying from disk
+		final String[] errors; // why a triple could not be read, when verifying from disk
+		final boolean[] ok;
+		final int lo, hi;
+
+		range_task(byte[][] m, byte[][] sig, Point[] V, String[][] paths, String[] errors, byte[][] keys, boolean[] ok, int lo, int hi) {
+			this.m = m;
+			this.sig = sig;
+			this.V = V;
+			this.paths = paths;
+			this.errors = errors;
+			this.keys = keys;
+			this.ok = ok;
+			this.lo = lo;
+			this.hi = hi;
+		}
+
+		@Override
+		protected void compute() {
+			if (hi - lo > MIN_RANGE) {
+				int mid = (lo + hi) >>> 1;
+				invokeAll(new range_task(m, sig, V, paths, errors, keys, ok, lo, mid),
+						new range_task(m, sig, V, paths, errors, keys, ok, mid, hi));
+				return;
+			}
+			for (int i = lo; i < hi; i++) {
+				if (V != null)
+					ok[i] = util.verifySignature(m[i], sig[i], V[i]);
+				else if (keys != null)
+					ok[i] = util.verifySignature(m[i], sig[i], PublicKeyCache.get(keys[i]));
+				else
+					ok[i] = verifyFile(i);
+			}
+		}
+
+		private boolean verifyFile(int i) {
+			byte[][] read = new byte[3][];
+			for (int f = 0; f < 3; f++) {
+				try {read[f] = Files.readAllBytes(Paths.get(paths[f][i]));}
+				catch (IOException | InvalidPathException e) {errors[i] = paths[f][i] + ": " + e; return false;}
+			}
+			return util.verifySignature(read[0], read[1], PublicKeyCache.get(read[2]));
+		}
+	}
+
+}
@@ -0,0 +1,130 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ *
+ * Key pair generation for many passphrases at once
+ *
+ * Every s_i * G is computed in parallel with the fixed-base tables and left in extended
+ * coordinates, then the whole batch is brought to affine with one shared inversion
+ * (Montgomery's trick, ExtendedPoint.normalize) instead of one inversion per key. The
+ * key files are written by the same workers right after.
+ *
+ * The pairs are the ones key generation (option 7) derives from the same passphrases.
+ * Nothing is kept in the Keyring.
+ *
+ * @authors Lindsay Ding, Alan Thompson, Christopher Henderson
+ *
+ */
+public class BulkKeygen {
+
+	/** Smallest range of keys a worker takes on its own */
+	static final int MIN_RANGE = 8;
+
+	/**
+	 * @param s private keys
+	 * @param pool the pool the multiplications run on
+	 * @return V[i] = s[i] * G
+	 */
+	public static Point[] publicKeys(BigInteger[] s, ForkJoinPool pool) {
+		ExtendedPoint[] E = new ExtendedPoint[s.length];
+		run(pool, s.length, i -> E[i] = FixedBase.multiplyExtended(s[i]));
+		ExtendedPoint.normalize(E);
+		Point[] V = new Point[s.length];
+		for (int i = 0; i < V.length; i++) // Z = 1 now, so X and Y are the affine coordinates
+			V[i] = new Point(E[i].X.toBigInteger(), E[i].Y.toBigInteger());
+		return V;
+	}
+
+	/**
+	 * Derive the key pair of every passphrase and write the key files.
+	 * @param pw the passphrases
+	 * @param publicKeyFiles where V[i] is written (util.pointDataZip)
+	 * @param privateKeyFiles where s[i], encrypted under pw[i], is written (util.encryptPrivateKey),
+	 *        or null to write no private keys
+	 * @param pool the pool the work runs on
+	 * @return the public keys
+	 * @throws IOException if a key file cannot be written; the others may have been
+	 */
+	public static Point[] generate(byte[][] pw, String[] publicKeyFiles, String[] privateKeyFiles, ForkJoinPool pool) throws IOException {
+		if (publicKeyFiles.length != pw.length || privateKeyFiles != null && privateKeyFiles.length != pw.length)
+			throw new IllegalArgumentException("need one key file per passphrase");
+		BigInteger[] s = new BigInteger[pw.length];
+		run(pool, pw.length, i -> s[i] = Keyring.deriveScalar(pw[i]));
+		Point[] V = publicKeys(s, pool);
+		try {
+			run(pool, pw.length, i -> {
+				try {
+					Files.write(Paths.get(publicKeyFiles[i]), util.pointDataZip(V[i]));
+					if (privateKeyFiles != null)
+						Files.write(Paths.get(privateKeyFiles[i]), util.encryptPrivateKey(s[i], pw[i]));
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		} catch (UncheckedIOException e) { // out of the workers
+			throw e.getCause();
+		}
+		return V;
+	}
+
+	/**
+	 * Key pairs for every non-blank line of a passphrase file (UTF-8), written to
+	 * prefix-<line>.pub and, if asked, prefix-<line>.priv, line numbers counting from 1.
+	 * @return how many key pairs were written
+	 * @throws IOException if the passphrase file cannot be read or a key file written
+	 */
+	public static int generateFromFile(String path, String prefix, boolean withPrivate, ForkJoinPool pool) throws IOException {
+		List<String> lines = Files.readAllLines(Paths.get(path), StandardCharsets.UTF_8);
+		List<byte[]> pw = new ArrayList<>();
+		List<String> pub = new ArrayList<>(), priv = new ArrayList<>();
+		for (int i = 0; i < lines.size(); i++) {
+			if (lines.get(i).isBlank())
+				continue;
+			pw.add(lines.get(i).getBytes(StandardCharsets.UTF_8));
+			pub.add(prefix + "-" + (i + 1) + ".pub");
+			priv.add(prefix + "-" + (i + 1) + ".priv");
+		}
+		generate(pw.toArray(new byte[0][]), pub.toArray(new String[0]),
+				withPrivate ? priv.toArray(new String[0]) : null, pool);
+		return pw.size();
+	}
+
+	private static void run(ForkJoinPool pool, int n, IntConsumer body) {
+		if (n > 0)
+			pool.invoke(new range_task(body, 0, n));
+	}
+
+	@SuppressWarnings("serial")
+	private static final class range_task extends RecursiveAction {
+		final IntConsumer body;
+		final int lo, hi;
+
+		range_task(IntConsumer body, int lo, int hi) {
+			this.body = body;
+			this.lo = lo;
+			this.hi = hi;
+		}
+
+		@Override
+		protected void compute() {
+			if (hi - lo > MIN_RANGE) {
+				int mid = (lo + hi) >>> 1;
+				invokeAll(new range_task(body, lo, mid), new range_task(body, mid, hi));
+				return;
+			}
+			for (int i = lo; i < hi; i++)
+				body.accept(i);
+		}
+	}
+
+}
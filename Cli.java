@@ -0,0 +1,475 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ *
+ * Headless command line: every menu option as a single command, and manifest files
+ *
+ * java Main <command> [arguments] runs one operation and exits, with no prompts. Paths are
+ * taken as given (no 'files' folder default). Passphrases come from --pass, an environment
+ * variable (--pass-env) or the first line of a file (--pass-file), so they need not show up
+ * in the process list. Hashes and MACs go to stdout as hex unless -o names a file.
+ *
+ * java Main manifest <file> [--parallel N] runs one command per line of the file in this
+ * JVM, on N threads, so thousands of operations share one start-up, one warmed up JIT and
+ * the Keyring / PublicKeyCache. Results are printed in line order, then a summary. With
+ * more than one thread the lines run in no particular order, so a line should not read a
+ * file another line of the same manifest writes.
+ *
+ * Exit status: 0 success, 1 the operation failed (wrong passphrase, bad signature, not a
+ * key or cryptogram), 2 bad command line, 3 a file could not be read or written.
+ *
+ * @authors Lindsay Ding, Alan Thompson, Christopher Henderson
+ *
+ */
+public class Cli {
+
+	static final int OK = 0, FAILED = 1, USAGE = 2, IO_ERROR = 3;
+
+	static final String USAGE_TEXT =
+		"usage: java Main <command> [arguments] [options]\n" +
+		"  hash        <file> | --text <text>                    [-o <out>]   (option 1, 2)\n" +
+		"  mac         <file> | --text <text>       <passphrase> [-o <out>]   (option 3, 4)\n" +
+		"  encrypt     <file> <out>                 <passphrase>              (option 5)\n" +
+		"  decrypt     <file> <out>                 <passphrase>              (option 6)\n" +
+		"  keygen      <public key out> [--private <out>] <passphrase>        (option 7)\n" +
+		"  ec-encrypt  <file> | --text <text> <public key> <out>              (option 8, 9)\n" +
+		"  ec-decrypt  <file> <out>                 <passphrase>              (option 10)\n" +
+		"  sign        <file> | --text <text> <signature out> <passphrase>    (option 11, 12)\n" +
+		"  verify      <file> <signature> <public key>                        (option 13)\n" +
+		"  phash       <file>                                    [-o <out>]   (option 14)\n" +
+		"  bulk-keygen <passphrase list> <prefix> [--with-private]            (option 15)\n" +
+		"  encrypt-tree <directory> <out directory> <passphrase> | --key <public key> [--workers <n>]  (option 16)\n" +
+		"  manifest    <file> [--parallel <threads>]\n" +
+		"  daemon      <socket> [--connections <n>]              (see Daemon for the protocol)\n" +
+		"  selftest                                              (known-answer tests)\n" +
+		"<passphrase> is one of  --pass <text> | --pass-env <variable> | --pass-file <file>\n" +
+		"a manifest holds one command per line, blank lines and lines starting with # are skipped";
+
+	// options that take a value; everything else starting with '-' is a flag
+	private static final List<String> VALUED = List.of("--text", "-o", "--private", "--pass", "--pass-env", "--pass-file", "--parallel", "--connections", "--key", "--workers");
+	private static final List<String> FLAGS = List.of("--with-private");
+
+	/**
+	 * Runs one command line, printing results to stdout and errors to stderr.
+	 * @return the exit status
+	 */
+	public static int run(String[] args) {
+		return execute(args, System.out, System.err, true);
+	}
+
+	/**
+	 * @param out where results go
+	 * @param err where failures go
+	 * @param top false for a manifest line, which may not start another manifest
+	 * @return the exit status
+	 */
+	static int execute(String[] args, PrintStream out, PrintStream err, boolean top) {
+		try {
+			Args a = new Args(args);
+			switch (a.command) {
+				case "hash":        return hash(a, out, false);
+				case "mac":         return hash(a, out, true);
+				case "encrypt":     return encrypt(a);
+				case "decrypt":     return decrypt(a, err);
+				case "keygen":      return keygen(a);
+				case "ec-encrypt":  return ecEncrypt(a);
+				case "ec-decrypt":  return ecDecrypt(a, err);
+				case "sign":        return sign(a);
+				case "verify":      return verify(a, out);
+				case "phash":       return phash(a, out);
+				case "bulk-keygen": return bulkKeygen(a, out);
+				case "encrypt-tree": return encryptTree(a, out);
+				case "selftest":    return selfTest(a, out);
+				case "daemon":
+					if (!top)
+						throw new UsageException("a manifest cannot start the daemon");
+					return daemon(a, err);
+				case "manifest":
+					if (!top)
+						throw new UsageException("a manifest cannot run another manifest");
+					return manifest(a, out);
+				case "help": case "-h": case "--help":
+					out.println(USAGE_TEXT);
+					return OK;
+				default:
+					throw new UsageException("unknown command '" + a.command + "'");
+			}
+		}
+		catch (UsageException e) {
+			err.println(Main.INVALID_INPUT + " " + e.getMessage());
+			if (top)
+				err.println(USAGE_TEXT);
+			return USAGE;
+		}
+		catch (NoSuchFileException e) {
+			err.println(Main.FILE_NOT_FOUND + " (" + e.getMessage() + ")");
+			return IO_ERROR;
+		}
+		catch (IOException e) { // permissions, a full disk, a daemon already serving, ...
+			err.println(Main.IO_FAILED + " " + e.getMessage());
+			return IO_ERROR;
+		}
+		catch (IllegalArgumentException | IllegalStateException e) { // not a key / cryptogram, expired key
+			err.println(e.getMessage());
+			return FAILED;
+		}
+	}
+
+	// options 1 - 4
+	private static int hash(Args a, PrintStream out, boolean mac) throws IOException {
+		byte[] md;
+		if (a.has("--text")) {
+			a.expect(0);
+			byte[] m = a.get("--text").getBytes();
+			md = mac ? Operations.mac(m, a.passphrase()) : Operations.hash(m);
+		}
+		else {
+			a.expect(1);
+			md = mac ? Operations.macFile(a.arg(0), a.passphrase()) : Operations.hashFile(a.arg(0));
+		}
+		return output(a, out, md);
+	}
+
+	// option 5
+	private static int encrypt(Args a) throws IOException {
+		a.expect(2);
+		Operations.encryptFile(a.arg(0), a.arg(1), a.passphrase());
+		return OK;
+	}
+
+	// option 6
+	private static int decrypt(Args a, PrintStream err) throws IOException {
+		a.expect(2);
+		if (Operations.decryptFile(a.arg(0), a.arg(1), a.passphrase()))
+			return OK;
+		err.println(Main.PASS_WRONG);
+		return FAILED;
+	}
+
+	// option 7
+	private static int keygen(Args a) throws IOException {
+		a.expect(1);
+		Operations.generateKey(a.passphrase(), a.arg(0), a.get("--private"));
+		return OK;
+	}
+
+	// options 8 and 9
+	private static int ecEncrypt(Args a) throws IOException {
+		byte[] m;
+		if (a.has("--text")) {
+			a.expect(2);
+			m = a.get("--text").getBytes();
+		}
+		else {
+			a.expect(3);
+			m = Files.readAllBytes(Paths.get(a.next()));
+		}
+		byte[] key = Files.readAllBytes(Paths.get(a.next()));
+		Files.write(Paths.get(a.next()), Operations.encryptElliptic(m, key));
+		return OK;
+	}
+
+	// option 10
+	private static int ecDecrypt(Args a, PrintStream err) throws IOException {
+		a.expect(2);
+		byte[] m = Operations.decryptElliptic(Files.readAllBytes(Paths.get(a.arg(0))), a.passphrase());
+		if (m == null) {
+			err.println(Main.PASS_WRONG);
+			return FAILED;
+		}
+		Files.write(Paths.get(a.arg(1)), m);
+		return OK;
+	}
+
+	// options 11 and 12
+	private static int sign(Args a) throws IOException {
+		byte[] m;
+		if (a.has("--text")) {
+			a.expect(1);
+			m = a.get("--text").getBytes();
+		}
+		else {
+			a.expect(2);
+			m = Files.readAllBytes(Paths.get(a.next()));
+		}
+		byte[] pw = a.passphrase();
+		Files.write(Paths.get(a.next()), Operations.sign(m, pw));
+		return OK;
+	}
+
+	// option 13
+	private static int verify(Args a, PrintStream out) throws IOException {
+		a.expect(3);
+		byte[] m = Files.readAllBytes(Paths.get(a.arg(0)));
+		byte[] sig = Files.readAllBytes(Paths.get(a.arg(1)));
+		byte[] key = Files.readAllBytes(Paths.get(a.arg(2)));
+		if (Operations.verify(m, sig, key)) {
+			out.println(Main.GOOD_SIGN);
+			return OK;
+		}
+		out.println(Main.BAD_SIGN);
+		return FAILED;
+	}
+
+	// option 14
+	private static int phash(Args a, PrintStream out) throws IOException {
+		a.expect(1);
+		return output(a, out, ParallelHash.fileParallelHash256(a.arg(0), ParallelHash.DEFAULT_BLOCK_SIZE, 512, Main.$D));
+	}
+
+	private static int selfTest(Args a, PrintStream out) {
+		a.expect(0);
+		return SelfTest.run(out) == 0 ? OK : FAILED;
+	}
+
+	// option 15
+	private static int bulkKeygen(Args a, PrintStream out) throws IOException {
+		a.expect(2);
+		int n = BulkKeygen.generateFromFile(a.arg(0), a.arg(1), a.has("--with-private"), ForkJoinPool.commonPool());
+		out.println(n + Main.BULK_DONE);
+		return OK;
+	}
+
+	// option 16
+	private static int encryptTree(Args a, PrintStream out) throws IOException {
+		a.expect(2);
+		int workers = Runtime.getRuntime().availableProcessors();
+		if (a.has("--workers")) {
+			try {workers = Integer.parseInt(a.get("--workers"));}
+			catch (NumberFormatException e) {workers = 0;}
+			if (workers < 1)
+				throw new UsageException("--workers needs a positive number");
+		}
+		TreeEncrypt.Summary sum = a.has("--key")
+				? TreeEncrypt.encryptElliptic(Paths.get(a.arg(0)), Paths.get(a.arg(1)), Files.readAllBytes(Paths.get(a.get("--key"))), workers)
+				: TreeEncrypt.encrypt(Paths.get(a.arg(0)), Paths.get(a.arg(1)), a.passphrase(), workers);
+		for (String e : sum.errors)
+			out.println(e);
+		out.println(sum);
+		return sum.failed == 0 ? OK : FAILED;
+	}
+
+	// serves requests on a Unix domain socket until killed
+	private static int daemon(Args a, PrintStream err) throws IOException {
+		a.expect(1);
+		int connections = Daemon.DEFAULT_CONNECTIONS;
+		if (a.has("--connections")) {
+			try {connections = Integer.parseInt(a.get("--connections"));}
+			catch (NumberFormatException e) {connections = 0;}
+			if (connections < 1)
+				throw new UsageException("--connections needs a positive number");
+		}
+		ServerSocketChannel server = Daemon.bind(a.arg(0));
+		err.println("serving on " + a.arg(0));
+		Daemon.serve(server, connections);
+		return OK;
+	}
+
+	// hex to out, or the raw bytes to the -o file
+	private static int output(Args a, PrintStream out, byte[] data) throws IOException {
+		if (a.has("-o"))
+			Files.write(Paths.get(a.get("-o")), data);
+		else out.println(HexFormat.of().formatHex(data));
+		return OK;
+	}
+
+	/**
+	 * Runs every command of a manifest file on a fixed pool of --parallel threads (1 by
+	 * default). Each line's output is collected on its own and printed, in line order, as
+	 * "<line>\t<status>\t<output>"; a summary line follows.
+	 * @return OK if every line succeeded, FAILED otherwise
+	 */
+	private static int manifest(Args a, PrintStream out) throws IOException {
+		a.expect(1);
+		int threads = 1;
+		if (a.has("--parallel")) {
+			try {threads = Integer.parseInt(a.get("--parallel"));}
+			catch (NumberFormatException e) {threads = 0;}
+			if (threads < 1)
+				throw new UsageException("--parallel needs a positive number of threads");
+		}
+
+		List<String> lines = Files.readAllLines(Paths.get(a.arg(0)), StandardCharsets.UTF_8);
+		List<Integer> lineNo = new ArrayList<>();
+		List<Future<String[]>> results = new ArrayList<>();
+
+		long start = System.nanoTime();
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			for (int i = 0; i < lines.size(); i++) {
+				String line = lines.get(i).strip();
+				if (line.isEmpty() || line.startsWith("#"))
+					continue;
+				lineNo.add(i + 1);
+				results.add(pool.submit(() -> executeLine(line)));
+			}
+
+			int failed = 0;
+			for (int i = 0; i < results.size(); i++) {
+				String[] r;
+				try {r = results.get(i).get();}
+				catch (ExecutionException e) {r = new String[] {"error", String.valueOf(e.getCause())};}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IOException("interrupted", e);
+				}
+				if (!r[0].equals("ok"))
+					failed++;
+				out.println(lineNo.get(i) + "\t" + r[0] + "\t" + r[1]);
+			}
+
+			double secs = (System.nanoTime() - start) / 1e9;
+			out.printf("%d operations, %d failed, %.3f s, %.1f operations/s on %d threads%n",
+					results.size(), failed, secs, results.size() / secs, threads);
+			return failed == 0 ? OK : FAILED;
+		}
+		finally {
+			pool.shutdownNow();
+		}
+	}
+
+	// {status, output on one line} for one manifest line
+	private static String[] executeLine(String line) {
+		ByteArrayOutputStream buf = new ByteArrayOutputStream();
+		PrintStream ps = new PrintStream(buf, true);
+		int code;
+		try {code = execute(tokenize(line), ps, ps, false);}
+		catch (UsageException e) {ps.println(e.getMessage()); code = USAGE;}
+		String status = code == OK ? "ok" : code == FAILED ? "failed" : code == USAGE ? "usage" : "io-error";
+		return new String[] {status, buf.toString().strip().replace('\n', ' ')};
+	}
+
+	/**
+	 * Splits a manifest line on whitespace; double quotes group words, \" is a quote.
+	 */
+	static String[] tokenize(String line) {
+		List<String> tokens = new ArrayList<>();
+		StringBuilder sb = new StringBuilder();
+		boolean quoted = false, inToken = false;
+		for (int i = 0; i < line.length(); i++) {
+			char ch = line.charAt(i);
+			if (ch == '\\' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+				sb.append('"');
+				inToken = true;
+				i++;
+			}
+			else if (ch == '"') {
+				quoted = !quoted;
+				inToken = true;
+			}
+			else if (Character.isWhitespace(ch) && !quoted) {
+				if (inToken)
+					tokens.add(sb.toString());
+				sb.setLength(0);
+				inToken = false;
+			}
+			else {
+				sb.append(ch);
+				inToken = true;
+			}
+		}
+		if (quoted)
+			throw new UsageException("unterminated quote");
+		if (inToken)
+			tokens.add(sb.toString());
+		return tokens.toArray(new String[0]);
+	}
+
+	@SuppressWarnings("serial")
+	private static final class UsageException extends IllegalArgumentException {
+		UsageException(String message) {
+			super(message);
+		}
+	}
+
+	/**
+	 * A parsed command line: the command, its positional arguments and its options
+	 */
+	private static final class Args {
+		final String command;
+		final List<String> args = new ArrayList<>();
+		final Map<String, String> options = new HashMap<>();
+		private int next;
+
+		Args(String[] argv) {
+			if (argv.length == 0)
+				throw new UsageException("no command");
+			command = argv[0];
+			for (int i = 1; i < argv.length; i++) {
+				String s = argv[i];
+				if (VALUED.contains(s)) {
+					if (i + 1 == argv.length)
+						throw new UsageException(s + " needs a value");
+					options.put(s, argv[++i]);
+				}
+				else if (FLAGS.contains(s))
+					options.put(s, "");
+				else if (s.startsWith("-") && s.length() > 1)
+					throw new UsageException("unknown option " + s);
+				else args.add(s);
+			}
+		}
+
+		boolean has(String option) {
+			return options.containsKey(option);
+		}
+
+		String get(String option) {
+			return options.get(option);
+		}
+
+		String arg(int i) {
+			return args.get(i);
+		}
+
+		// the positional arguments in order
+		String next() {
+			return args.get(next++);
+		}
+
+		void expect(int n) {
+			if (args.size() != n)
+				throw new UsageException(command + " takes " + n + " file argument" + (n == 1 ? "" : "s") + ", got " + args.size());
+		}
+
+		/**
+		 * @return the passphrase from --pass, --pass-env or --pass-file (its first line), as UTF-8
+		 *         like the passphrase files of bulk-keygen, so the same text gives the same key
+		 */
+		byte[] passphrase() throws IOException {
+			int given = (has("--pass") ? 1 : 0) + (has("--pass-env") ? 1 : 0) + (has("--pass-file") ? 1 : 0);
+			if (given != 1)
+				throw new UsageException(command + " needs exactly one of --pass, --pass-env, --pass-file");
+			if (has("--pass"))
+				return get("--pass").getBytes(StandardCharsets.UTF_8);
+			if (has("--pass-env")) {
+				String pw = System.getenv(get("--pass-env"));
+				if (pw == null)
+					throw new UsageException("environment variable " + get("--pass-env") + " is not set");
+				return pw.getBytes(StandardCharsets.UTF_8);
+			}
+			String text = Files.readString(Paths.get(get("--pass-file")), StandardCharsets.UTF_8);
+			int eol = text.indexOf('\n');
+			if (eol >= 0)
+				text = text.substring(0, eol > 0 && text.charAt(eol - 1) == '\r' ? eol - 1 : eol);
+			return text.getBytes(StandardCharsets.UTF_8);
+		}
+	}
+}
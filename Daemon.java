@@ -0,0 +1,361 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.BindException;
+import java.net.ConnectException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ *
+ * Long running crypto service on a Unix domain socket
+ *
+ * Keeps one JVM warm for callers on the same host: the JIT, the Keccak prefix cache, the
+ * Keyring and the PublicKeyCache all survive between requests, so a hash costs a socket
+ * round trip plus the permutations rather than a JVM start-up.
+ *
+ * Protocol, every integer a big-endian u32, a connection carries any number of requests
+ * answered in order:
+ *
+ *   frame     = length body               (length of body in bytes, at most MAX_FRAME)
+ *   request   = u8 op, field*
+ *   response  = u8 status, field*
+ *   field     = length bytes
+ *
+ *   op            request fields      response fields on OK
+ *   1 HASH        m                   KMACXOF256("", m, 512, "D")
+ *   2 MAC         pw, m               KMACXOF256(pw, m, 512, "T")
+ *   3 ENCRYPT     pw, m               symmetric cryptogram z || t || c
+ *   4 DECRYPT     pw, cryptogram      m
+ *   5 EC_ENCRYPT  public key, m       elliptic cryptogram Z || t || c
+ *   6 EC_DECRYPT  pw, cryptogram      m
+ *   7 SIGN        pw, m               signature
+ *   8 VERIFY      public key, m, sig  (none)
+ *
+ *   status 0 OK, 1 FAILED (wrong passphrase, bad signature, not a key or cryptogram),
+ *   2 BAD_REQUEST (unknown op, wrong number of fields, frame too long), 3 ERROR; anything
+ *   but OK carries one field, a UTF-8 message. The connection is closed after BAD_REQUEST.
+ *
+ * Keys and cryptograms are in the same formats as the files the menu writes.
+ *
+ * Each connection is served by one worker, at most -Ddaemon.connections (64) at a time;
+ * further connections wait in the socket backlog. Workers are virtual threads when the
+ * JVM has them (21+), platform threads otherwise.
+ *
+ * @authors Lindsay Ding, Alan Thompson, Christopher Henderson
+ *
+ */
+public class Daemon {
+
+	static final byte HASH = 1, MAC = 2, ENCRYPT = 3, DECRYPT = 4, EC_ENCRYPT = 5, EC_DECRYPT = 6, SIGN = 7, VERIFY = 8;
+
+	static final byte OK = 0, FAILED = 1, BAD_REQUEST = 2, ERROR = 3;
+
+	/** Longest frame accepted, -Ddaemon.maxFrame (64 MiB) */
+	static final int MAX_FRAME = Integer.getInteger("daemon.maxFrame", 64 << 20);
+
+	/** Longest reply frame a Client accepts: a cryptogram is its message plus a few hundred bytes */
+	static final int MAX_REPLY = MAX_FRAME + 1024;
+
+	/** Default bound on connections served at once */
+	static final int DEFAULT_CONNECTIONS = Integer.getInteger("daemon.connections", 64);
+
+	// fields each op takes
+	private static final int[] FIELDS = {-1, 1, 2, 2, 2, 2, 2, 2, 3};
+
+	/**
+	 * Serves requests on a Unix domain socket until the JVM exits; bind then serve.
+	 * @param socketPath where the socket is bound
+	 * @param connections how many connections are served at once
+	 * @throws BindException if socketPath is taken
+	 * @throws IOException if the socket cannot be bound
+	 */
+	public static void serve(String socketPath, int connections) throws IOException {
+		serve(bind(socketPath), connections);
+	}
+
+	/**
+	 * Binds the daemon's socket. A stale socket left by a daemon that is gone is replaced;
+	 * anything else at socketPath (a file, or the socket of a daemon still running) is left
+	 * alone and the call fails. The socket is removed again on exit, unless it has been
+	 * replaced in the meantime.
+	 * @param socketPath where the socket is bound
+	 * @return the bound socket, for serve
+	 * @throws BindException if socketPath is taken
+	 * @throws IOException if the socket cannot be bound
+	 */
+	public static ServerSocketChannel bind(String socketPath) throws IOException {
+		Path path = Paths.get(socketPath);
+		UnixDomainSocketAddress address = UnixDomainSocketAddress.of(path);
+		removeStale(path, address);
+		ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+		try {server.bind(address);}
+		catch (IOException e) {
+			server.close();
+			throw e;
+		}
+		Object bound = identity(path);
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			try {
+				server.close();
+				if (bound != null && bound.equals(identity(path)))
+					Files.delete(path);
+			} catch (IOException ignored) {}
+		}));
+		return server;
+	}
+
+	/**
+	 * Serves requests on a socket from bind until it is closed.
+	 * @param connections how many connections are served at once
+	 */
+	public static void serve(ServerSocketChannel server, int connections) throws IOException {
+		if (connections < 1)
+			throw new IllegalArgumentException("connections " + connections);
+		ExecutorService workers = workers(connections);
+		Semaphore slots = new Semaphore(connections);
+		try {
+			while (server.isOpen()) {
+				slots.acquireUninterruptibly();
+				SocketChannel ch;
+				try {ch = server.accept();}
+				catch (IOException e) {
+					slots.release();
+					if (!server.isOpen())
+						break;
+					throw e;
+				}
+				workers.execute(() -> {
+					try {connection(ch);}
+					finally {slots.release();}
+				});
+			}
+		} finally {
+			workers.shutdownNow();
+		}
+	}
+
+	// deletes what is at path only if it is a socket nobody answers on
+	private static void removeStale(Path path, UnixDomainSocketAddress address) throws IOException {
+		BasicFileAttributes attrs;
+		try {attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);}
+		catch (NoSuchFileException free) {return;}
+		if (!isSocket(path, attrs))
+			throw new BindException("address in use, not a socket: " + path);
+		try {
+			SocketChannel.open(address).close();
+			throw new BindException("address in use, a daemon is serving on " + path);
+		} catch (ConnectException stale) {
+			Files.delete(path);
+		}
+	}
+
+	private static boolean isSocket(Path path, BasicFileAttributes attrs) throws IOException {
+		try {
+			return ((Integer) Files.getAttribute(path, "unix:mode", LinkOption.NOFOLLOW_LINKS) & 0170000) == 0140000; // S_IFSOCK
+		} catch (UnsupportedOperationException noUnixView) {
+			return attrs.isOther();
+		}
+	}
+
+	// what tells the socket this process bound apart from one bound later at the same path
+	private static Object identity(Path path) {
+		try {
+			BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+			return attrs.fileKey() != null ? attrs.fileKey() : attrs.creationTime();
+		} catch (IOException gone) {
+			return null;
+		}
+	}
+
+	// one virtual thread per connection where the JVM has them, the Semaphore bounds them
+	private static ExecutorService workers(int connections) {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newFixedThreadPool(connections, r -> {
+				Thread t = new Thread(r, "daemon-worker");
+				t.setDaemon(true);
+				return t;
+			});
+		}
+	}
+
+	// answers the requests of one connection in order until the peer closes it
+	private static void connection(SocketChannel ch) {
+		try (ch;
+			 DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(ch)));
+			 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(ch)))) {
+			while (true) {
+				int len;
+				try {len = in.readInt();}
+				catch (EOFException closed) {return;}
+
+				if (len < 1 || len > MAX_FRAME) {
+					reply(out, BAD_REQUEST, message("frame of " + len + " bytes"));
+					return;
+				}
+				byte[] body = new byte[len];
+				in.readFully(body);
+				Reply r = handle(body);
+				reply(out, r.status, r.fields);
+				if (r.status == BAD_REQUEST)
+					return;
+			}
+		} catch (IOException dropped) {
+			// the peer went away mid frame, nothing to answer
+		}
+	}
+
+	/**
+	 * Runs one request frame.
+	 * @param body op and fields, without the length prefix
+	 */
+	static Reply handle(byte[] body) {
+		int op = body[0];
+		if (op < 1 || op >= FIELDS.length)
+			return new Reply(BAD_REQUEST, message("unknown op " + op));
+		byte[][] f = fields(body, FIELDS[op]);
+		if (f == null)
+			return new Reply(BAD_REQUEST, message("op " + op + " takes " + FIELDS[op] + " fields"));
+		try {
+			switch (op) {
+				case HASH:       return ok(Operations.hash(f[0]));
+				case MAC:        return ok(Operations.mac(f[1], f[0]));
+				case ENCRYPT:    return ok(Operations.encrypt(f[1], f[0]));
+				case DECRYPT:    return okOrWrongPass(Operations.decrypt(f[1], f[0]));
+				case EC_ENCRYPT: return ok(Operations.encryptElliptic(f[1], f[0]));
+				case EC_DECRYPT: return okOrWrongPass(Operations.decryptElliptic(f[1], f[0]));
+				case SIGN:       return ok(Operations.sign(f[1], f[0]));
+				default:         // VERIFY
+					return Operations.verify(f[1], f[2], f[0]) ? new Reply(OK)
+							: new Reply(FAILED, message(Main.BAD_SIGN));
+			}
+		} catch (IllegalArgumentException | IllegalStateException e) {
+			return new Reply(FAILED, message(e.getMessage()));
+		} catch (RuntimeException e) {
+			return new Reply(ERROR, message(String.valueOf(e)));
+		}
+	}
+
+	// exactly n length-prefixed fields after the op byte, or null
+	private static byte[][] fields(byte[] body, int n) {
+		byte[][] f = new byte[n][];
+		int pos = 1;
+		for (int i = 0; i < n; i++) {
+			if (body.length - pos < 4)
+				return null;
+			int len = util.bytesToInt(body, pos);
+			pos += 4;
+			if (len < 0 || len > body.length - pos)
+				return null;
+			f[i] = Arrays.copyOfRange(body, pos, pos + len);
+			pos += len;
+		}
+		return pos == body.length ? f : null;
+	}
+
+	private static void reply(DataOutputStream out, byte status, byte[]... fields) throws IOException {
+		int len = 1;
+		for (byte[] f : fields)
+			len += 4 + f.length;
+		out.writeInt(len);
+		out.writeByte(status);
+		for (byte[] f : fields) {
+			out.writeInt(f.length);
+			out.write(f);
+		}
+		out.flush();
+	}
+
+	private static Reply ok(byte[] result) {
+		return new Reply(OK, result);
+	}
+
+	private static Reply okOrWrongPass(byte[] m) {
+		return m != null ? new Reply(OK, m) : new Reply(FAILED, message(Main.PASS_WRONG));
+	}
+
+	private static byte[] message(String s) {
+		return String.valueOf(s).getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * A status and its fields
+	 */
+	public static final class Reply {
+		public final byte status;
+		public final byte[][] fields;
+
+		Reply(byte status, byte[]... fields) {
+			this.status = status;
+			this.fields = fields;
+		}
+
+		/**
+		 * @return the message of a reply that is not OK
+		 */
+		public String message() {
+			return fields.length > 0 ? new String(fields[0], StandardCharsets.UTF_8) : "";
+		}
+	}
+
+	/**
+	 * A connection to a running daemon, for Java callers; requests go one at a time.
+	 */
+	public static final class Client implements Closeable {
+		private final SocketChannel ch;
+		private final DataInputStream in;
+		private final DataOutputStream out;
+
+		public Client(String socketPath) throws IOException {
+			ch = SocketChannel.open(UnixDomainSocketAddress.of(socketPath));
+			in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(ch)));
+			out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(ch)));
+		}
+
+		/**
+		 * @param op one of the op codes
+		 * @param fields the request fields of op
+		 * @return the daemon's reply
+		 */
+		public synchronized Reply call(byte op, byte[]... fields) throws IOException {
+			reply(out, op, fields); // a request is framed the same way as a reply
+			int len = in.readInt();
+			if (len < 1 || len > MAX_REPLY)
+				throw new IOException("malformed reply");
+			byte[] body = new byte[len];
+			in.readFully(body);
+			int n = 0;
+			for (int pos = 1, flen; pos + 4 <= len && (flen = util.bytesToInt(body, pos)) >= 0 && flen <= len - pos - 4; n++)
+				pos += 4 + flen;
+			byte[][] f = fields(body, n);
+			if (f == null)
+				throw new IOException("malformed reply");
+			return new Reply(body[0], f);
+		}
+
+		@Override
+		public void close() throws IOException {
+			ch.close();
+		}
+	}
+}
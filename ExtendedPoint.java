@@ -0,0 +1,225 @@
+import java.math.BigInteger;
+
+/**
+ * A point of the Edwards curve x^2 + y^2 = 1 + d x^2 y^2 (a = 1, d = -39081) in extended
+ * projective coordinates (X : Y : Z : T) with x = X / Z, y = Y / Z and x y = T / Z.
+ *
+ * Addition and doubling need no inversion, so a scalar multiplication runs entirely on
+ * multiplications and one inversion at the end (toPoint) turns the result back into an
+ * affine Point. Formulas: Hisil, Wong, Carter, Dawson, "Twisted Edwards Curves Revisited"
+ * (add-2008-hwcd, madd-2008-hwcd, dbl-2008-hwcd) with a = 1.
+ *
+ * Like FieldElement, points are mutable and every operation updates this.
+ *
+ * @authors Lindsay Ding, Alan Thompson, Christopher Henderson
+ *
+ */
+public final class ExtendedPoint {
+
+	final FieldElement X = new FieldElement(), Y = new FieldElement(),
+			Z = new FieldElement(), T = new FieldElement();
+
+	// scratch space for add and dbl, allocated on first use
+	private FieldElement[] t;
+
+	/**
+	 * The neutral element (0 : 1 : 1 : 0)
+	 */
+	public ExtendedPoint() {
+		setNeutral();
+	}
+
+	/**
+	 * @param P an affine point, taken with Z = 1
+	 */
+	public ExtendedPoint(Point P) {
+		set(P);
+	}
+
+	/**
+	 * this = P with Z = 1
+	 */
+	public ExtendedPoint set(Point P) {
+		X.set(P.getX());
+		Y.set(P.getY());
+		Z.setOne();
+		T.mul(X, Y);
+		return this;
+	}
+
+	/**
+	 * this = Q
+	 */
+	public ExtendedPoint set(ExtendedPoint Q) {
+		X.set(Q.X);
+		Y.set(Q.Y);
+		Z.set(Q.Z);
+		T.set(Q.T);
+		return this;
+	}
+
+	/**
+	 * this = (0 : 1 : 1 : 0)
+	 */
+	public ExtendedPoint setNeutral() {
+		X.setZero();
+		Y.setOne();
+		Z.setOne();
+		T.setZero();
+		return this;
+	}
+
+	/**
+	 * this = -this, i.e. (-X : Y : Z : -T)
+	 */
+	public ExtendedPoint negate() {
+		X.neg(X);
+		T.neg(T);
+		return this;
+	}
+
+	/**
+	 * this = this + Q, for any two points (the formula is complete since d is not a square)
+	 */
+	public ExtendedPoint add(ExtendedPoint Q) {
+		return add(Q, false);
+	}
+
+	/**
+	 * this = this + Q where Q.Z is known to be 1, which saves a multiplication
+	 */
+	public ExtendedPoint addAffine(ExtendedPoint Q) {
+		return add(Q, true);
+	}
+
+	private ExtendedPoint add(ExtendedPoint Q, boolean affine) {
+		FieldElement[] t = scratch();
+		FieldElement A = t[0], B = t[1], C = t[2], D = t[3], E = t[4], F = t[5];
+		A.mul(X, Q.X);                // A = X1 X2
+		B.mul(Y, Q.Y);                // B = Y1 Y2
+		C.mul(T, Q.T);
+		C.mulSmall(C, Point.D_NEG);   // C = -d T1 T2, the negation of the paper's C
+		if (affine)
+			D.set(Z);                 // D = Z1
+		else
+			D.mul(Z, Q.Z);            // D = Z1 Z2
+		E.add(X, Y);
+		F.add(Q.X, Q.Y);
+		E.mul(E, F);
+		E.sub(E, A);
+		E.sub(E, B);                  // E = (X1 + Y1)(X2 + Y2) - A - B
+		A.sub(B, A);                  // H = B - A
+		F.add(D, C);                  // F = D - d T1 T2
+		C.sub(D, C);                  // G = D + d T1 T2
+		return finish(E, F, C, A);
+	}
+
+	/**
+	 * this = 2 this
+	 */
+	public ExtendedPoint dbl() {
+		FieldElement[] t = scratch();
+		FieldElement A = t[0], B = t[1], C = t[2], E = t[3], G = t[4];
+		A.sqr(X);                     // A = X^2
+		B.sqr(Y);                     // B = Y^2
+		C.sqr(Z);
+		C.add(C, C);                  // C = 2 Z^2
+		E.add(X, Y);
+		E.sqr(E);
+		E.sub(E, A);
+		E.sub(E, B);                  // E = (X + Y)^2 - A - B
+		G.add(A, B);                  // G = A + B
+		A.sub(A, B);                  // H = A - B
+		C.sub(G, C);                  // F = G - C
+		return finish(E, C, G, A);
+	}
+
+	// X3 = E F, Y3 = G H, T3 = E H, Z3 = F G
+	private ExtendedPoint finish(FieldElement E, FieldElement F, FieldElement G, FieldElement H) {
+		X.mul(E, F);
+		Y.mul(G, H);
+		T.mul(E, H);
+		Z.mul(F, G);
+		return this;
+	}
+
+	/**
+	 * Divides out Z so that this has Z = 1 (and can be used with addAffine)
+	 */
+	public ExtendedPoint normalize() {
+		FieldElement inv = scratch()[0].invert(Z);
+		X.mul(X, inv);
+		Y.mul(Y, inv);
+		Z.setOne();
+		T.mul(X, Y);
+		return this;
+	}
+
+	/**
+	 * Normalizes every point to Z = 1 sharing a single inversion between all of them
+	 * (Montgomery's trick: invert the product of the Z's, then peel the factors off)
+	 * @param P points, none of them with Z = 0
+	 */
+	public static void normalize(ExtendedPoint[] P) {
+		if (P.length == 0)
+			return;
+		FieldElement[] prefix = new FieldElement[P.length]; // Z_0 ... Z_i
+		FieldElement acc = new FieldElement().setOne();
+		for (int i = 0; i < P.length; i++)
+			prefix[i] = acc.mul(acc, P[i].Z).copy();
+		FieldElement inv = new FieldElement().invert(acc);  // 1 / (Z_0 ... Z_n-1)
+		FieldElement zi = new FieldElement();
+		for (int i = P.length - 1; i >= 0; i--) {
+			ExtendedPoint Q = P[i];
+			if (i > 0)
+				zi.mul(inv, prefix[i - 1]);                  // 1 / Z_i
+			else
+				zi.set(inv);
+			inv.mul(inv, Q.Z);                               // 1 / (Z_0 ... Z_i-1)
+			Q.X.mul(Q.X, zi);
+			Q.Y.mul(Q.Y, zi);
+			Q.Z.setOne();
+			Q.T.mul(Q.X, Q.Y);
+		}
+	}
+
+	/**
+	 * @return the affine Point, at the cost of one inversion
+	 */
+	public Point toPoint() {
+		FieldElement inv = scratch()[0].invert(Z);
+		FieldElement x = scratch()[1].mul(X, inv), y = scratch()[2].mul(Y, inv);
+		return new Point(x.toBigInteger(), y.toBigInteger());
+	}
+
+	/**
+	 * Scalar multiplication s P by double and add, with a single inversion at the end
+	 * @param P a point on the curve
+	 * @param s the scalar factor, any sign
+	 * @return s P as an affine Point
+	 */
+	public static Point multiply(Point P, BigInteger s) {
+		if (Metrics.ENABLED) Metrics.SCALAR_MULTIPLICATIONS.increment();
+		ExtendedPoint base = new ExtendedPoint(P);
+		if (s.signum() == -1) {
+			s = s.negate();
+			base.negate();
+		}
+		ExtendedPoint R = new ExtendedPoint();
+		for (int i = s.bitLength() - 1; i >= 0; i--) {
+			R.dbl();
+			if (s.testBit(i))
+				R.addAffine(base);
+		}
+		return R.toPoint();
+	}
+
+	private FieldElement[] scratch() {
+		if (t == null) {
+			t = new FieldElement[6];
+			for (int i = 0; i < t.length; i++)
+				t[i] = new FieldElement();
+		}
+		return t;
+	}
+}
@@ -0,0 +1,500 @@
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * An element of GF(p) for the Ed448-Goldilocks prime p = 2^448 - 2^224 - 1
+ * 
+ * Stored as 16 limbs of 28 bits in longs, value = sum of limb[i] * 2^(28 i).
+ * Elements are mutable and every operation writes its result into this, so a
+ * scalar multiplication can run on a handful of preallocated elements.
+ * Reduction uses the shape of p: with t = 2^224 (8 limbs), 2^448 = t^2 = t + 1 mod p,
+ * so the high half of a product folds back onto limbs i and i + 8 without any division.
+ * 
+ * Limbs are kept "weakly" reduced: each at most a little over 28 bits and the value
+ * below 2p, not necessarily below p. toBigInteger, isZero, isOdd and equals look at
+ * the fully reduced value.
+ * 
+ * @authors Lindsay Ding, Alan Thompson, Christopher Henderson
+ *
+ */
+public final class FieldElement {
+
+	static final int LIMBS = 16, BITS = 28;
+	static final long MASK = (1L << BITS) - 1;
+
+	/** The modulus, the same value as Point.p (not read from Point so either class can initialize first) */
+	static final BigInteger P = BigInteger.ONE.shiftLeft(448).subtract(BigInteger.ONE.shiftLeft(224)).subtract(BigInteger.ONE);
+
+	// 2p limb by limb, added before subtracting so limbs never go negative
+	private static final long TWO_P = 2 * MASK, TWO_P_MID = 2 * (MASK - 1);
+
+	long[] limb = new long[LIMBS];
+
+	// results are computed here and then swapped in, so a.mul(a, a) is safe without allocating
+	private long[] spare = new long[LIMBS];
+
+	/**
+	 * Zero element
+	 */
+	public FieldElement() {
+	}
+
+	/**
+	 * @param v any integer, reduced mod p
+	 */
+	public FieldElement(BigInteger v) {
+		set(v);
+	}
+
+	/**
+	 * @param v a small integer, reduced mod p
+	 */
+	public FieldElement(long v) {
+		set(BigInteger.valueOf(v));
+	}
+
+	public FieldElement set(FieldElement a) {
+		System.arraycopy(a.limb, 0, limb, 0, LIMBS);
+		return this;
+	}
+
+	public FieldElement setZero() {
+		Arrays.fill(limb, 0);
+		return this;
+	}
+
+	public FieldElement setOne() {
+		Arrays.fill(limb, 0);
+		limb[0] = 1;
+		return this;
+	}
+
+	public FieldElement set(BigInteger v) {
+		v = v.mod(P);
+		for (int i = 0; i < LIMBS; i++)
+			limb[i] = v.shiftRight(BITS * i).longValue() & MASK;
+		return this;
+	}
+
+	/**
+	 * @return a copy of this element
+	 */
+	public FieldElement copy() {
+		return new FieldElement().set(this);
+	}
+
+	/**
+	 * this = a + b
+	 */
+	public FieldElement add(FieldElement a, FieldElement b) {
+		long[] x = a.limb, y = b.limb, c = spare;
+		for (int i = 0; i < LIMBS; i++)
+			c[i] = x[i] + y[i];
+		return carry(c);
+	}
+
+	/**
+	 * this = a - b
+	 */
+	public FieldElement sub(FieldElement a, FieldElement b) {
+		long[] x = a.limb, y = b.limb, c = spare;
+		for (int i = 0; i < LIMBS; i++)
+			c[i] = x[i] + (i == 8 ? TWO_P_MID : TWO_P) - y[i];
+		return carry(c);
+	}
+
+	/**
+	 * this = -a
+	 */
+	public FieldElement neg(FieldElement a) {
+		long[] x = a.limb, c = spare;
+		for (int i = 0; i < LIMBS; i++)
+			c[i] = (i == 8 ? TWO_P_MID : TWO_P) - x[i];
+		return carry(c);
+	}
+
+	/**
+	 * this = a * k for a small non-negative constant k below 2^32, e.g. |d| = 39081
+	 */
+	public FieldElement mulSmall(FieldElement a, long k) {
+		assert k >= 0 && k < (1L << 32);
+		long[] x = a.limb, c = spare;
+		for (int i = 0; i < LIMBS; i++)
+			c[i] = x[i] * k;
+		return carry(c);
+	}
+
+	/**
+	 * this = a * b
+	 */
+	public FieldElement mul(FieldElement a, FieldElement b) {
+		// C_k below is column k of the schoolbook product; folding 2^448 = 2^224 + 1 twice gives
+		//   r_i     = C_i     + C_i+16 + C_i+24
+		//   r_i+8   = C_i+8   + C_i+16 + 2 C_i+24      for i < 8
+		// with limbs of at most 28 bits (plus a few carry bits) every column is below 2^60, so r stays below 2^63
+		long[] x = a.limb, y = b.limb, c = spare;
+		long x0 = x[0], x1 = x[1], x2 = x[2], x3 = x[3], x4 = x[4], x5 = x[5], x6 = x[6], x7 = x[7];
+		long x8 = x[8], x9 = x[9], x10 = x[10], x11 = x[11], x12 = x[12], x13 = x[13], x14 = x[14], x15 = x[15];
+		long y0 = y[0], y1 = y[1], y2 = y[2], y3 = y[3], y4 = y[4], y5 = y[5], y6 = y[6], y7 = y[7];
+		long y8 = y[8], y9 = y[9], y10 = y[10], y11 = y[11], y12 = y[12], y13 = y[13], y14 = y[14], y15 = y[15];
+
+		long c0  = x0 * y0;
+		long c1  = x0 * y1 + x1 * y0;
+		long c2  = x0 * y2 + x1 * y1 + x2 * y0;
+		long c3  = x0 * y3 + x1 * y2 + x2 * y1 + x3 * y0;
+		long c4  = x0 * y4 + x1 * y3 + x2 * y2 + x3 * y1 + x4 * y0;
+		long c5  = x0 * y5 + x1 * y4 + x2 * y3 + x3 * y2 + x4 * y1 + x5 * y0;
+		long c6  = x0 * y6 + x1 * y5 + x2 * y4 + x3 * y3 + x4 * y2 + x5 * y1 + x6 * y0;
+		long c7  = x0 * y7 + x1 * y6 + x2 * y5 + x3 * y4 + x4 * y3 + x5 * y2 + x6 * y1 + x7 * y0;
+		long c8  = x0 * y8 + x1 * y7 + x2 * y6 + x3 * y5 + x4 * y4 + x5 * y3 + x6 * y2 + x7 * y1 + x8 * y0;
+		long c9  = x0 * y9 + x1 * y8 + x2 * y7 + x3 * y6 + x4 * y5 + x5 * y4 + x6 * y3 + x7 * y2 + x8 * y1 + x9 * y0;
+		long c10 = x0 * y10 + x1 * y9 + x2 * y8 + x3 * y7 + x4 * y6 + x5 * y5 + x6 * y4 + x7 * y3 + x8 * y2 + x9 * y1 + x10 * y0;
+		long c11 = x0 * y11 + x1 * y10 + x2 * y9 + x3 * y8 + x4 * y7 + x5 * y6 + x6 * y5 + x7 * y4 + x8 * y3 + x9 * y2 + x10 * y1 + x11 * y0;
+		long c12 = x0 * y12 + x1 * y11 + x2 * y10 + x3 * y9 + x4 * y8 + x5 * y7 + x6 * y6 + x7 * y5 + x8 * y4 + x9 * y3 + x10 * y2 + x11 * y1 + x12 * y0;
+		long c13 = x0 * y13 + x1 * y12 + x2 * y11 + x3 * y10 + x4 * y9 + x5 * y8 + x6 * y7 + x7 * y6 + x8 * y5 + x9 * y4 + x10 * y3 + x11 * y2 + x12 * y1 + x13 * y0;
+		long c14 = x0 * y14 + x1 * y13 + x2 * y12 + x3 * y11 + x4 * y10 + x5 * y9 + x6 * y8 + x7 * y7 + x8 * y6 + x9 * y5 + x10 * y4 + x11 * y3 + x12 * y2 + x13 * y1 + x14 * y0;
+		long c15 = x0 * y15 + x1 * y14 + x2 * y13 + x3 * y12 + x4 * y11 + x5 * y10 + x6 * y9 + x7 * y8 + x8 * y7 + x9 * y6 + x10 * y5 + x11 * y4 + x12 * y3 + x13 * y2 + x14 * y1 + x15 * y0;
+		long c16 = x1 * y15 + x2 * y14 + x3 * y13 + x4 * y12 + x5 * y11 + x6 * y10 + x7 * y9 + x8 * y8 + x9 * y7 + x10 * y6 + x11 * y5 + x12 * y4 + x13 * y3 + x14 * y2 + x15 * y1;
+		long c17 = x2 * y15 + x3 * y14 + x4 * y13 + x5 * y12 + x6 * y11 + x7 * y10 + x8 * y9 + x9 * y8 + x10 * y7 + x11 * y6 + x12 * y5 + x13 * y4 + x14 * y3 + x15 * y2;
+		long c18 = x3 * y15 + x4 * y14 + x5 * y13 + x6 * y12 + x7 * y11 + x8 * y10 + x9 * y9 + x10 * y8 + x11 * y7 + x12 * y6 + x13 * y5 + x14 * y4 + x15 * y3;
+		long c19 = x4 * y15 + x5 * y14 + x6 * y13 + x7 * y12 + x8 * y11 + x9 * y10 + x10 * y9 + x11 * y8 + x12 * y7 + x13 * y6 + x14 * y5 + x15 * y4;
+		long c20 = x5 * y15 + x6 * y14 + x7 * y13 + x8 * y12 + x9 * y11 + x10 * y10 + x11 * y9 + x12 * y8 + x13 * y7 + x14 * y6 + x15 * y5;
+		long c21 = x6 * y15 + x7 * y14 + x8 * y13 + x9 * y12 + x10 * y11 + x11 * y10 + x12 * y9 + x13 * y8 + x14 * y7 + x15 * y6;
+		long c22 = x7 * y15 + x8 * y14 + x9 * y13 + x10 * y12 + x11 * y11 + x12 * y10 + x13 * y9 + x14 * y8 + x15 * y7;
+		long c23 = x8 * y15 + x9 * y14 + x10 * y13 + x11 * y12 + x12 * y11 + x13 * y10 + x14 * y9 + x15 * y8;
+		long c24 = x9 * y15 + x10 * y14 + x11 * y13 + x12 * y12 + x13 * y11 + x14 * y10 + x15 * y9;
+		long c25 = x10 * y15 + x11 * y14 + x12 * y13 + x13 * y12 + x14 * y11 + x15 * y10;
+		long c26 = x11 * y15 + x12 * y14 + x13 * y13 + x14 * y12 + x15 * y11;
+		long c27 = x12 * y15 + x13 * y14 + x14 * y13 + x15 * y12;
+		long c28 = x13 * y15 + x14 * y14 + x15 * y13;
+		long c29 = x14 * y15 + x15 * y14;
+		long c30 = x15 * y15;
+
+		c[0] = c0 + c16 + c24;
+		c[1] = c1 + c17 + c25;
+		c[2] = c2 + c18 + c26;
+		c[3] = c3 + c19 + c27;
+		c[4] = c4 + c20 + c28;
+		c[5] = c5 + c21 + c29;
+		c[6] = c6 + c22 + c30;
+		c[7] = c7 + c23;
+		c[8] = c8 + c16 + 2 * c24;
+		c[9] = c9 + c17 + 2 * c25;
+		c[10] = c10 + c18 + 2 * c26;
+		c[11] = c11 + c19 + 2 * c27;
+		c[12] = c12 + c20 + 2 * c28;
+		c[13] = c13 + c21 + 2 * c29;
+		c[14] = c14 + c22 + 2 * c30;
+		c[15] = c15 + c23;
+		return carry(c);
+	}
+
+	/**
+	 * this = a^2, using the symmetry of the product to do about half the multiplications of mul
+	 */
+	public FieldElement sqr(FieldElement a) {
+		long[] x = a.limb, c = spare;
+		long x0 = x[0], x1 = x[1], x2 = x[2], x3 = x[3], x4 = x[4], x5 = x[5], x6 = x[6], x7 = x[7];
+		long x8 = x[8], x9 = x[9], x10 = x[10], x11 = x[11], x12 = x[12], x13 = x[13], x14 = x[14], x15 = x[15];
+
+		long c0  = x0 * x0;
+		long c1  = 2 * x0 * x1;
+		long c2  = 2 * x0 * x2 + x1 * x1;
+		long c3  = 2 * (x0 * x3 + x1 * x2);
+		long c4  = 2 * (x0 * x4 + x1 * x3) + x2 * x2;
+		long c5  = 2 * (x0 * x5 + x1 * x4 + x2 * x3);
+		long c6  = 2 * (x0 * x6 + x1 * x5 + x2 * x4) + x3 * x3;
+		long c7  = 2 * (x0 * x7 + x1 * x6 + x2 * x5 + x3 * x4);
+		long c8  = 2 * (x0 * x8 + x1 * x7 + x2 * x6 + x3 * x5) + x4 * x4;
+		long c9  = 2 * (x0 * x9 + x1 * x8 + x2 * x7 + x3 * x6 + x4 * x5);
+		long c10 = 2 * (x0 * x10 + x1 * x9 + x2 * x8 + x3 * x7 + x4 * x6) + x5 * x5;
+		long c11 = 2 * (x0 * x11 + x1 * x10 + x2 * x9 + x3 * x8 + x4 * x7 + x5 * x6);
+		long c12 = 2 * (x0 * x12 + x1 * x11 + x2 * x10 + x3 * x9 + x4 * x8 + x5 * x7) + x6 * x6;
+		long c13 = 2 * (x0 * x13 + x1 * x12 + x2 * x11 + x3 * x10 + x4 * x9 + x5 * x8 + x6 * x7);
+		long c14 = 2 * (x0 * x14 + x1 * x13 + x2 * x12 + x3 * x11 + x4 * x10 + x5 * x9 + x6 * x8) + x7 * x7;
+		long c15 = 2 * (x0 * x15 + x1 * x14 + x2 * x13 + x3 * x12 + x4 * x11 + x5 * x10 + x6 * x9 + x7 * x8);
+		long c16 = 2 * (x1 * x15 + x2 * x14 + x3 * x13 + x4 * x12 + x5 * x11 + x6 * x10 + x7 * x9) + x8 * x8;
+		long c17 = 2 * (x2 * x15 + x3 * x14 + x4 * x13 + x5 * x12 + x6 * x11 + x7 * x10 + x8 * x9);
+		long c18 = 2 * (x3 * x15 + x4 * x14 + x5 * x13 + x6 * x12 + x7 * x11 + x8 * x10) + x9 * x9;
+		long c19 = 2 * (x4 * x15 + x5 * x14 + x6 * x13 + x7 * x12 + x8 * x11 + x9 * x10);
+		long c20 = 2 * (x5 * x15 + x6 * x14 + x7 * x13 + x8 * x12 + x9 * x11) + x10 * x10;
+		long c21 = 2 * (x6 * x15 + x7 * x14 + x8 * x13 + x9 * x12 + x10 * x11);
+		long c22 = 2 * (x7 * x15 + x8 * x14 + x9 * x13 + x10 * x12) + x11 * x11;
+		long c23 = 2 * (x8 * x15 + x9 * x14 + x10 * x13 + x11 * x12);
+		long c24 = 2 * (x9 * x15 + x10 * x14 + x11 * x13) + x12 * x12;
+		long c25 = 2 * (x10 * x15 + x11 * x14 + x12 * x13);
+		long c26 = 2 * (x11 * x15 + x12 * x14) + x13 * x13;
+		long c27 = 2 * (x12 * x15 + x13 * x14);
+		long c28 = 2 * x13 * x15 + x14 * x14;
+		long c29 = 2 * x14 * x15;
+		long c30 = x15 * x15;
+
+		c[0] = c0 + c16 + c24;
+		c[1] = c1 + c17 + c25;
+		c[2] = c2 + c18 + c26;
+		c[3] = c3 + c19 + c27;
+		c[4] = c4 + c20 + c28;
+		c[5] = c5 + c21 + c29;
+		c[6] = c6 + c22 + c30;
+		c[7] = c7 + c23;
+		c[8] = c8 + c16 + 2 * c24;
+		c[9] = c9 + c17 + 2 * c25;
+		c[10] = c10 + c18 + 2 * c26;
+		c[11] = c11 + c19 + 2 * c27;
+		c[12] = c12 + c20 + 2 * c28;
+		c[13] = c13 + c21 + 2 * c29;
+		c[14] = c14 + c22 + 2 * c30;
+		c[15] = c15 + c23;
+		return carry(c);
+	}
+
+	/**
+	 * this = a^e for a non-negative exponent, left to right over fixed 4-bit windows
+	 * (one multiply per window instead of one per set bit)
+	 */
+	public FieldElement pow(FieldElement a, BigInteger e) {
+		FieldElement[] table = new FieldElement[16]; // a^0 .. a^15
+		table[0] = new FieldElement().setOne();
+		table[1] = a.copy();
+		for (int i = 2; i < 16; i++)
+			table[i] = new FieldElement().mul(table[i - 1], table[1]);
+		setOne();
+		for (int i = (e.bitLength() + 3) & ~3; (i -= 4) >= 0; ) {
+			sqr(this);
+			sqr(this);
+			sqr(this);
+			sqr(this);
+			int w = (e.testBit(i + 3) ? 8 : 0) | (e.testBit(i + 2) ? 4 : 0)
+					| (e.testBit(i + 1) ? 2 : 0) | (e.testBit(i) ? 1 : 0);
+			if (w != 0)
+				mul(this, table[w]);
+		}
+		return this;
+	}
+
+	/**
+	 * this = 1 / a by Fermat, a^(p-2) = (a^((p-3)/4))^4 * a; the inverse of 0 comes out as 0
+	 */
+	public FieldElement invert(FieldElement a) {
+		FieldElement t = new FieldElement().powP34(a);
+		t.sqr(t);
+		t.sqr(t);
+		return mul(t, a);
+	}
+
+	/**
+	 * this = a square root of a, a^((p+1)/4) = a^((p-3)/4) * a since p = 3 mod 4
+	 * @return true if a is a square (otherwise this is a root of -a)
+	 */
+	public boolean sqrt(FieldElement a) {
+		FieldElement t = new FieldElement().powP34(a);
+		t.mul(t, a);
+		boolean square = new FieldElement().sqr(t).equals(a);
+		set(t);
+		return square;
+	}
+
+	/**
+	 * this = a square root of u / v without a separate inversion,
+	 * (u/v)^((p+1)/4) = u^3 v (u^5 v^3)^((p-3)/4) as in RFC 8032 (5.2.3)
+	 * @param v must not be 0
+	 * @return true if u / v is a square
+	 */
+	public boolean sqrtRatio(FieldElement u, FieldElement v) {
+		FieldElement u2 = new FieldElement().sqr(u), uv = new FieldElement().mul(u, v);
+		FieldElement t = new FieldElement().mul(u2, uv);          // u^3 v
+		FieldElement w = new FieldElement().sqr(uv);
+		w.mul(w, t);                                              // u^5 v^3
+		w.powP34(w);
+		t.mul(t, w);
+		FieldElement check = new FieldElement().sqr(t);
+		boolean square = check.mul(check, v).equals(u);
+		set(t);
+		return square;
+	}
+
+	/**
+	 * this = a^((p-3)/4) = a^(2^446 - 2^222 - 1) by a fixed addition chain of
+	 * 451 squarings and 12 multiplications, where x_k = a^(2^k - 1):
+	 * x_2k = x_k^(2^k) x_k, and the result is x_223^(2^223) x_222
+	 */
+	public FieldElement powP34(FieldElement a) {
+		FieldElement x1 = a.copy(), x3 = new FieldElement(), x6 = new FieldElement(), t = new FieldElement();
+		t.sqr(x1).mul(t, x1);                     // x2
+		x3.sqr(t).mul(x3, x1);                    // x3
+		x6.sqrN(x3, 3).mul(x6, x3);               // x6
+		t.sqrN(x6, 6).mul(t, x6);                 // x12
+		FieldElement x24 = new FieldElement().sqrN(t, 12);
+		x24.mul(x24, t);                          // x24
+		t.sqrN(x24, 24).mul(t, x24);              // x48
+		FieldElement x96 = new FieldElement().sqrN(t, 48);
+		x96.mul(x96, t);                          // x96
+		t.sqrN(x96, 96).mul(t, x96);              // x192
+		FieldElement x30 = x24.sqrN(x24, 6);
+		x30.mul(x30, x6);                         // x30 = x24^(2^6) x6
+		t.sqrN(t, 30).mul(t, x30);                // x222
+		x3.sqr(t).mul(x3, x1);                    // x223
+		x3.sqrN(x3, 223);
+		return mul(x3, t);
+	}
+
+	/**
+	 * this = a^(2^n), n squarings
+	 */
+	public FieldElement sqrN(FieldElement a, int n) {
+		sqr(a);
+		for (int i = 1; i < n; i++)
+			sqr(this);
+		return this;
+	}
+
+	// carries every limb into the next, folding the carry out of the top limb back in at 2^0 and 2^224
+	private FieldElement carry(long[] c) {
+		for (int i = 0; i < LIMBS - 1; i++) {
+			c[i + 1] += c[i] >> BITS;
+			c[i] &= MASK;
+		}
+		long t = c[LIMBS - 1] >> BITS;
+		c[LIMBS - 1] &= MASK;
+		c[0] += t;
+		c[8] += t;
+		c[1] += c[0] >> BITS;
+		c[0] &= MASK;
+		c[9] += c[8] >> BITS;
+		c[8] &= MASK;
+
+		spare = limb;
+		limb = c;
+		return this;
+	}
+
+	/**
+	 * @param out receives the fully reduced limbs, every one below 2^28 and the value below p
+	 */
+	void freeze(long[] out) {
+		System.arraycopy(limb, 0, out, 0, LIMBS);
+		for (int pass = 0; pass < 2; pass++) {
+			for (int i = 0; i < LIMBS - 1; i++) {
+				out[i + 1] += out[i] >> BITS;
+				out[i] &= MASK;
+			}
+			long t = out[LIMBS - 1] >> BITS;
+			out[LIMBS - 1] &= MASK;
+			out[0] += t;
+			out[8] += t;
+		}
+		// now below 2^448; subtract p if adding 2^448 - p = 2^224 + 1 carries out of the top limb
+		long[] q = new long[LIMBS];
+		long carry = 1;
+		for (int i = 0; i < LIMBS; i++) {
+			q[i] = out[i] + carry + (i == 8 ? 1 : 0);
+			carry = q[i] >> BITS;
+			q[i] &= MASK;
+		}
+		if (carry != 0)
+			System.arraycopy(q, 0, out, 0, LIMBS);
+	}
+
+	/** Size of the little-endian byte form of an element */
+	public static final int BYTES = 56;
+
+	/**
+	 * this = the 56-byte little-endian number starting at b[off]
+	 * @return false if that number is not below p (this then holds it reduced mod p)
+	 */
+	public boolean setBytes(byte[] b, int off) {
+		for (int i = 0; i < LIMBS; i += 2, off += 7) { // 7 bytes are exactly two limbs
+			long v = 0;
+			for (int j = 6; j >= 0; j--)
+				v = v << 8 | (b[off + j] & 0xFF);
+			limb[i] = v & MASK;
+			limb[i + 1] = v >>> BITS;
+		}
+		return isCanonical();
+	}
+
+	/**
+	 * Like setBytes(byte[], int), reading at an absolute index of buf, its position untouched
+	 */
+	public boolean setBytes(ByteBuffer buf, int index) {
+		for (int i = 0; i < LIMBS; i += 2, index += 7) {
+			long v = 0;
+			for (int j = 6; j >= 0; j--)
+				v = v << 8 | (buf.get(index + j) & 0xFF);
+			limb[i] = v & MASK;
+			limb[i + 1] = v >>> BITS;
+		}
+		return isCanonical();
+	}
+
+	/**
+	 * Writes the fully reduced value as 56 little-endian bytes at out[off]
+	 */
+	public void getBytes(byte[] out, int off) {
+		long[] f = new long[LIMBS];
+		freeze(f);
+		for (int i = 0; i < LIMBS; i += 2, off += 7) {
+			long v = f[i] | f[i + 1] << BITS;
+			for (int j = 0; j < 7; j++, v >>>= 8)
+				out[off + j] = (byte) v;
+		}
+	}
+
+	// true if the limbs already hold the fully reduced value
+	private boolean isCanonical() {
+		long[] f = new long[LIMBS];
+		freeze(f);
+		return Arrays.equals(f, limb);
+	}
+
+	public BigInteger toBigInteger() {
+		long[] f = new long[LIMBS];
+		freeze(f);
+		BigInteger v = BigInteger.ZERO;
+		for (int i = LIMBS - 1; i >= 0; i--)
+			v = v.shiftLeft(BITS).or(BigInteger.valueOf(f[i]));
+		return v;
+	}
+
+	public boolean isZero() {
+		long[] f = new long[LIMBS];
+		freeze(f);
+		long acc = 0;
+		for (long v : f)
+			acc |= v;
+		return acc == 0;
+	}
+
+	/**
+	 * @return the least significant bit of the fully reduced value
+	 */
+	public boolean isOdd() {
+		long[] f = new long[LIMBS];
+		freeze(f);
+		return (f[0] & 1) == 1;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof FieldElement))
+			return false;
+		long[] f = new long[LIMBS], g = new long[LIMBS];
+		freeze(f);
+		((FieldElement) o).freeze(g);
+		return Arrays.equals(f, g);
+	}
+
+	@Override
+	public int hashCode() {
+		long[] f = new long[LIMBS];
+		freeze(f);
+		return Arrays.hashCode(f);
+	}
+
+	@Override
+	public String toString() {
+		return toBigInteger().toString();
+	}
+
+}
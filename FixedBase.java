@@ -0,0 +1,76 @@
+import java.math.BigInteger;
+import java.util.Objects;
+
+/**
+ * Fixed-base scalar multiplication k * G for the generator G.
+ *
+ * The scalar is reduced mod r (the order of G) and cut into 112 windows of 4 bits,
+ * k = sum k_i 16^i. For each window the table holds j 16^i G for j = 1 .. 15, so
+ * k * G is the sum of at most 112 table entries: additions only, no doublings.
+ * The entries are stored with Z = 1 and added with the cheaper mixed addition.
+ *
+ * The table (112 * 15 points) is built on first use and shared by all threads.
+ *
+ * @authors Lindsay Ding, Alan Thompson, Christopher Henderson
+ *
+ */
+public final class FixedBase {
+
+	static final int WINDOW = 4, WINDOWS = 112, ENTRIES = (1 << WINDOW) - 1;
+
+	// initialized by the JVM on first access to Table.T, which makes the lazy build thread safe
+	private static final class Table {
+		static final ExtendedPoint[][] T = build();
+	}
+
+	private FixedBase() {
+	}
+
+	/**
+	 * @param k the scalar factor, any sign or size
+	 * @return k * G
+	 */
+	public static Point multiply(BigInteger k) {
+		return multiplyExtended(k).toPoint();
+	}
+
+	/**
+	 * k * G left in extended coordinates, for callers that normalize many results together
+	 * (ExtendedPoint.normalize)
+	 */
+	public static ExtendedPoint multiplyExtended(BigInteger k) {
+		if (Metrics.ENABLED) Metrics.SCALAR_MULTIPLICATIONS.increment();
+		byte[] b = k.mod(Point.r).toByteArray(); // big-endian, two nibbles per byte
+		ExtendedPoint[][] T = Table.T;
+		ExtendedPoint R = new ExtendedPoint();
+		for (int i = 0; i < WINDOWS && i / 2 < b.length; i++) {
+			int w = (b[b.length - 1 - i / 2] >> (4 * (i & 1))) & ENTRIES;
+			if (w != 0)
+				R.addAffine(T[i][w - 1]);
+		}
+		return R;
+	}
+
+	/**
+	 * Builds the table now instead of on the first multiplication
+	 */
+	public static void precompute() {
+		Objects.requireNonNull(Table.T);
+	}
+
+	// T[i][j - 1] = j 16^i G, normalized together with one inversion
+	private static ExtendedPoint[][] build() {
+		ExtendedPoint[][] T = new ExtendedPoint[WINDOWS][ENTRIES];
+		ExtendedPoint[] all = new ExtendedPoint[WINDOWS * ENTRIES];
+		ExtendedPoint base = new ExtendedPoint(Point.G);
+		for (int i = 0; i < WINDOWS; i++) {
+			T[i][0] = new ExtendedPoint().set(base);
+			for (int j = 1; j < ENTRIES; j++)
+				T[i][j] = new ExtendedPoint().set(T[i][j - 1]).add(base);
+			base.set(T[i][7]).dbl(); // 16^(i+1) G = 2 * (8 16^i G)
+			System.arraycopy(T[i], 0, all, i * ENTRIES, ENTRIES);
+		}
+		ExtendedPoint.normalize(all);
+		return T;
+	}
+}
@@ -1,6 +1,14 @@
-
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ReadOnlyBufferException;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 
 /**
@@ -15,14 +23,34 @@ import java.nio.charset.StandardCharsets;
 public class Keccak {
 
 	final static int KECCAKF_ROUNDS = 24;
-	final static boolean BYTE_ORDER_LITTLE_ENDIAN = true;
+
+	// constants
+	private final static long[] keccakf_rndc = { 0x0000000000000001L, 0x0000000000008082L, 0x800000000000808aL,
+			0x8000000080008000L, 0x000000000000808bL, 0x0000000080000001L, 0x8000000080008081L, 0x8000000000008009L,
+			0x000000000000008aL, 0x0000000000000088L, 0x0000000080008009L, 0x000000008000000aL, 0x000000008000808bL,
+			0x800000000000008bL, 0x8000000000008089L, 0x8000000000008003L, 0x8000000000008002L, 0x8000000000000080L,
+			0x000000000000800aL, 0x800000008000000aL, 0x8000000080008081L, 0x8000000000008080L, 0x0000000080000001L,
+			0x8000000080008008L };
+
+	// little-endian view of 8 bytes as one lane, as the C code gets for free from its union
+	private final static VarHandle LANE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+	// the same over a ByteBuffer, heap or direct, at absolute indices
+	private final static VarHandle BUFFER_LANE = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+	// KMAC's XOF suffix right_encode(0), absorbed by every KMAC sponge_final
+	private final static byte[] RIGHT_ENCODE_ZERO = right_encode(BigInteger.ZERO);
 
 	public static class sha3_ctx_t {
 		public class struct_st {
-			byte[] b = new byte[200];
+			// the C union of b[200] / q[25]; only the 64-bit lanes are stored,
+			// byte j of the state is (q[j / 8] >>> 8 * (j % 8)) & 0xFF
+			long[] q = new long[25];
 		}
 		struct_st st = new struct_st();
 		int pt, rsiz, mdlen;
+		// how the sponge is closed: cSHAKE or plain SHAKE padding, and whether KMAC's right_encode(0) goes first
+		boolean cshake, kmac, squeezing;
 	};
 
 	// ROTL64 MACRO
@@ -30,118 +58,132 @@ public class Keccak {
 		return (x << y) | (x >>> (64 - (y)));
 	}
 
+	/**
+	 * Byte-array adapter of the permutation, kept for callers holding a raw 200 byte state.
+	 * Lanes are read and written little-endian, as in the reference implementation.
+	 * @param byteSt the 200 byte state, permuted in place
+	 */
 	public static void sha3_keccakf(byte[] byteSt) {
-
 		long[] st = new long[25];
-		int index = 0;
-		for (int i = 0; i < st.length; i++) {
-			st[i] = util.bytesToLong(byteSt, index);
-			index += 8;
-		}
+		for (int i = 0; i < 25; i++)
+			st[i] = (long) LANE.get(byteSt, i << 3);
 
-		// constants
-		final long[] keccakf_rndc = { 0x0000000000000001L, 0x0000000000008082L, 0x800000000000808aL,
-				0x8000000080008000L, 0x000000000000808bL, 0x0000000080000001L, 0x8000000080008081L, 0x8000000000008009L,
-				0x000000000000008aL, 0x0000000000000088L, 0x0000000080008009L, 0x000000008000000aL, 0x000000008000808bL,
-				0x800000000000008bL, 0x8000000000008089L, 0x8000000000008003L, 0x8000000000008002L, 0x8000000000000080L,
-				0x000000000000800aL, 0x800000008000000aL, 0x8000000080008081L, 0x8000000000008080L, 0x0000000080000001L,
-				0x8000000080008008L };
-
-		final int[] keccakf_rotc = { 1, 3, 6, 10, 15, 21, 28, 36, 45, 55, 2, 14, 27, 41, 56, 8, 25, 43, 62, 18, 39, 61,
-				20, 44 };
-		final int[] keccakf_piln = { 10, 7, 11, 17, 18, 3, 5, 16, 8, 21, 24, 4, 15, 23, 19, 13, 12, 2, 20, 14, 22, 9, 6,
-				1 };
-
-		// variables
-		int i, j, r;
-		long t;
-		long[] bc = new long[5];
-
-		if (BYTE_ORDER_LITTLE_ENDIAN) {
-			byte[] v;
-			// endianess conversion. this is redundant on little-endian targets
-			for (i = 0; i < 25; i++) {
-				v = util.longToBytes(st[i]);
-				st[i] = (((long) v[0]) & 0xFF) | ((((long) v[1]) & 0xFF) << 8) | ((((long) v[2]) & 0xFF) << 16)
-						| ((((long) v[3]) & 0xFF) << 24) | ((((long) v[4]) & 0xFF) << 32)
-						| ((((long) v[5]) & 0xFF) << 40) | ((((long) v[6]) & 0xFF) << 48)
-						| ((((long) v[7]) & 0xFF) << 56);
-			}
-		}
+		sha3_keccakf(st);
 
-		// actual iteration
-		for (r = 0; r < KECCAKF_ROUNDS; r++) {
-
-			// System.out.println("Before" + Arrays.toString(st));
-			// new Scanner(System.in).nextLine();
-			// Theta
-			for (i = 0; i < 5; i++)
-				bc[i] = st[i] ^ st[i + 5] ^ st[i + 10] ^ st[i + 15] ^ st[i + 20];
-
-			for (i = 0; i < 5; i++) {
-				t = bc[(i + 4) % 5] ^ ROTL64(bc[(i + 1) % 5], 1);
-				for (j = 0; j < 25; j += 5)
-					st[j + i] ^= t;
-			}
+		for (int i = 0; i < 25; i++)
+			LANE.set(byteSt, i << 3, st[i]);
+	}
 
-			// System.out.println("Theta" + Arrays.toString(st));
-			// new Scanner(System.in).nextLine();
+	/**
+	 * Keccak-f[1600] on the 25 lanes of the state, in place.
+	 * The steps of each round are fully unrolled over local variables so nothing is allocated.
+	 * @param st the 25 lane state, indexed x + 5y
+	 */
+	public static void sha3_keccakf(long[] st) {
+		if (Metrics.ENABLED) Metrics.PERMUTATIONS.increment();
+		long a00 = st[ 0], a01 = st[ 1], a02 = st[ 2], a03 = st[ 3], a04 = st[ 4];
+		long a05 = st[ 5], a06 = st[ 6], a07 = st[ 7], a08 = st[ 8], a09 = st[ 9];
+		long a10 = st[10], a11 = st[11], a12 = st[12], a13 = st[13], a14 = st[14];
+		long a15 = st[15], a16 = st[16], a17 = st[17], a18 = st[18], a19 = st[19];
+		long a20 = st[20], a21 = st[21], a22 = st[22], a23 = st[23], a24 = st[24];
+		long bc0, bc1, bc2, bc3, bc4, t;
+
+		for (int r = 0; r < KECCAKF_ROUNDS; r++) {
 
-			// Rho Pi
-			t = st[1];
-			for (i = 0; i < 24; i++) {
-				j = keccakf_piln[i];
-				bc[0] = st[j];
-				st[j] = ROTL64(t, keccakf_rotc[i]);
-				t = bc[0];
-			}
+			// Theta
+			bc0 = a00 ^ a05 ^ a10 ^ a15 ^ a20;
+			bc1 = a01 ^ a06 ^ a11 ^ a16 ^ a21;
+			bc2 = a02 ^ a07 ^ a12 ^ a17 ^ a22;
+			bc3 = a03 ^ a08 ^ a13 ^ a18 ^ a23;
+			bc4 = a04 ^ a09 ^ a14 ^ a19 ^ a24;
+
+			t = bc4 ^ ROTL64(bc1, 1);
+			a00 ^= t; a05 ^= t; a10 ^= t; a15 ^= t; a20 ^= t;
+			t = bc0 ^ ROTL64(bc2, 1);
+			a01 ^= t; a06 ^= t; a11 ^= t; a16 ^= t; a21 ^= t;
+			t = bc1 ^ ROTL64(bc3, 1);
+			a02 ^= t; a07 ^= t; a12 ^= t; a17 ^= t; a22 ^= t;
+			t = bc2 ^ ROTL64(bc4, 1);
+			a03 ^= t; a08 ^= t; a13 ^= t; a18 ^= t; a23 ^= t;
+			t = bc3 ^ ROTL64(bc0, 1);
+			a04 ^= t; a09 ^= t; a14 ^= t; a19 ^= t; a24 ^= t;
+
+			// Rho Pi (the keccakf_piln / keccakf_rotc walk starting from st[1])
+			t = a01;
+			a01 = ROTL64(a06, 44);
+			a06 = ROTL64(a09, 20);
+			a09 = ROTL64(a22, 61);
+			a22 = ROTL64(a14, 39);
+			a14 = ROTL64(a20, 18);
+			a20 = ROTL64(a02, 62);
+			a02 = ROTL64(a12, 43);
+			a12 = ROTL64(a13, 25);
+			a13 = ROTL64(a19,  8);
+			a19 = ROTL64(a23, 56);
+			a23 = ROTL64(a15, 41);
+			a15 = ROTL64(a04, 27);
+			a04 = ROTL64(a24, 14);
+			a24 = ROTL64(a21,  2);
+			a21 = ROTL64(a08, 55);
+			a08 = ROTL64(a16, 45);
+			a16 = ROTL64(a05, 36);
+			a05 = ROTL64(a03, 28);
+			a03 = ROTL64(a18, 21);
+			a18 = ROTL64(a17, 15);
+			a17 = ROTL64(a11, 10);
+			a11 = ROTL64(a07,  6);
+			a07 = ROTL64(a10,  3);
+			a10 = ROTL64(t,    1);
 
 			// Chi
-			for (j = 0; j < 25; j += 5) {
-				for (i = 0; i < 5; i++)
-					bc[i] = st[j + i];
-				for (i = 0; i < 5; i++)
-					st[j + i] ^= ((~bc[(i + 1) % 5]) & bc[(i + 2) % 5]);
-			}
+			bc0 = a00; bc1 = a01;
+			a00 ^= ~a01 & a02; a01 ^= ~a02 & a03; a02 ^= ~a03 & a04; a03 ^= ~a04 & bc0; a04 ^= ~bc0 & bc1;
+			bc0 = a05; bc1 = a06;
+			a05 ^= ~a06 & a07; a06 ^= ~a07 & a08; a07 ^= ~a08 & a09; a08 ^= ~a09 & bc0; a09 ^= ~bc0 & bc1;
+			bc0 = a10; bc1 = a11;
+			a10 ^= ~a11 & a12; a11 ^= ~a12 & a13; a12 ^= ~a13 & a14; a13 ^= ~a14 & bc0; a14 ^= ~bc0 & bc1;
+			bc0 = a15; bc1 = a16;
+			a15 ^= ~a16 & a17; a16 ^= ~a17 & a18; a17 ^= ~a18 & a19; a18 ^= ~a19 & bc0; a19 ^= ~bc0 & bc1;
+			bc0 = a20; bc1 = a21;
+			a20 ^= ~a21 & a22; a21 ^= ~a22 & a23; a22 ^= ~a23 & a24; a23 ^= ~a24 & bc0; a24 ^= ~bc0 & bc1;
 
 			// Iota
-			st[0] ^= keccakf_rndc[r];
+			a00 ^= keccakf_rndc[r];
 		}
 
-		if (BYTE_ORDER_LITTLE_ENDIAN) {
-			byte[] v;
-			// endianess conversion. this is redundant on little-endian targets
-			for (i = 0; i < 25; i++) {
-				v = util.longToBytes(st[i]);
-				st[i] = (((long) v[0]) & 0xFF) | ((((long) v[1]) & 0xFF) << 8) | ((((long) v[2]) & 0xFF) << 16)
-						| ((((long) v[3]) & 0xFF) << 24) | ((((long) v[4]) & 0xFF) << 32)
-						| ((((long) v[5]) & 0xFF) << 40) | ((((long) v[6]) & 0xFF) << 48)
-						| ((((long) v[7]) & 0xFF) << 56);
-			}
-		}
-
-		int idx = 0;
-		for (int n = 0; n < st.length; n++) {
-			byte[] temp = util.longToBytes(st[n]);
-			System.arraycopy(temp, 0, byteSt, idx, 8);
-			idx += 8;
-		}
+		st[ 0] = a00; st[ 1] = a01; st[ 2] = a02; st[ 3] = a03; st[ 4] = a04;
+		st[ 5] = a05; st[ 6] = a06; st[ 7] = a07; st[ 8] = a08; st[ 9] = a09;
+		st[10] = a10; st[11] = a11; st[12] = a12; st[13] = a13; st[14] = a14;
+		st[15] = a15; st[16] = a16; st[17] = a17; st[18] = a18; st[19] = a19;
+		st[20] = a20; st[21] = a21; st[22] = a22; st[23] = a23; st[24] = a24;
 	}
 
 	private static void sha3_init(sha3_ctx_t c, int mdlen) {
-		for (int i = 0; i < 200; i++)
-			c.st.b[i] = 0;
+		for (int i = 0; i < 25; i++)
+			c.st.q[i] = 0;
 		c.mdlen = mdlen;
 		c.rsiz = 200 - 2 * mdlen;
 		c.pt = 0;
 	}
 
-	private static void sha3_update(sha3_ctx_t c, byte[] data, int len) {
+	private static void sha3_update(sha3_ctx_t c, byte[] data, int off, int len) {
+		if (Metrics.ENABLED) Metrics.BYTES_ABSORBED.add(len);
+		long[] q = c.st.q;
 		int j = c.pt;
-		for (int i = 0; i < len; i++) {
-			c.st.b[j++] ^= data[i];
+		int i = off;
+		len += off;
+		while (i < len) {
+			if ((j & 7) == 0 && len - i >= 8) {
+				// whole lane at a time while the state position is lane aligned
+				q[j >>> 3] ^= (long) LANE.get(data, i);
+				i += 8;
+				j += 8;
+			} else {
+				q[j >>> 3] ^= (data[i++] & 0xFFL) << ((j & 7) << 3);
+				j++;
+			}
 			if (j >= c.rsiz) {
-				sha3_keccakf(c.st.b);
+				sha3_keccakf(q);
 				j = 0;
 			}
 		}
@@ -150,66 +192,356 @@ public class Keccak {
 
 	private static void shake_xof(sha3_ctx_t c, boolean flag) {
 		// true -> cShake | false -> shake
-		c.st.b[c.pt] ^= (byte) (flag ? 0x04 : 0x1F);
-		c.st.b[c.rsiz - 1] ^= 0x80;
-		sha3_keccakf(c.st.b);
+		c.st.q[c.pt >>> 3] ^= (long) (flag ? 0x04 : 0x1F) << ((c.pt & 7) << 3);
+		c.st.q[(c.rsiz - 1) >>> 3] ^= 0x80L << (((c.rsiz - 1) & 7) << 3);
+		sha3_keccakf(c.st.q);
 		c.pt = 0;
 	}
 
-	private static void shake_out(sha3_ctx_t c, byte[] out, int len) {
-		int i;
+	private static void shake_out(sha3_ctx_t c, byte[] out, int off, int len) {
+		if (Metrics.ENABLED) Metrics.BYTES_SQUEEZED.add(len);
+		long[] q = c.st.q;
+		int i = off;
 		int j = c.pt;
-		for (i = 0; i < len; i++) {
+		len += off;
+		while (i < len) {
 			if (j >= c.rsiz) {
-				sha3_keccakf(c.st.b);
+				sha3_keccakf(q);
 				j = 0;
 			}
-			out[i] = c.st.b[j++];
+			if ((j & 7) == 0 && len - i >= 8) {
+				LANE.set(out, i, q[j >>> 3]);
+				i += 8;
+				j += 8;
+			} else {
+				out[i++] = (byte) (q[j >>> 3] >>> ((j & 7) << 3));
+				j++;
+			}
 		}
 
 		c.pt = j;
 	}
 
-	public static byte[] KMACXOF256(byte[] K, byte[] X, int L, byte[] S) {
+	/**
+	 * Starts an incremental KMACXOF256 computation under key K and customization string S.
+	 * The bytepad / encode_string framing of N = "KMAC", S and K is absorbed here, so the
+	 * message can then be fed through sponge_update in pieces of any size.
+	 * @param K the key
+	 * @param S the customization string
+	 * @return a context ready to absorb the message X
+	 */
+	public static sha3_ctx_t KMACXOF256_init(byte[] K, byte[] S) {
+		sha3_ctx_t c = cSHAKE256_init("KMAC", S);
+		c.kmac = true;
 		byte[] paddedK = bytepad(encode_string(K), 136);
-		byte[] encodedX = new byte[paddedK.length + X.length + 2];
-		System.arraycopy(paddedK, 0, encodedX, 0, paddedK.length);
-		System.arraycopy(X, 0, encodedX, paddedK.length, X.length);
-		System.arraycopy(right_encode(BigInteger.ZERO), 0, encodedX, encodedX.length - 2, 2);
-		return cSHAKE256(encodedX, L, "KMAC", S);
+		sha3_update(c, paddedK, 0, paddedK.length);
+		return c;
 	}
 
-	private static byte[] cSHAKE256(byte[] X, int L, String N, byte[] S) {
+	/**
+	 * Same as KMACXOF256_init, but the state after absorbing the (K, S) prefix is remembered,
+	 * so later calls with the same key and customization string just copy 25 lanes
+	 * instead of re-encoding and re-absorbing the framing.
+	 * Only worth it for keys that are used over and over, e.g. a MAC passphrase.
+	 * @param K the key
+	 * @param S the customization string
+	 * @return a context ready to absorb the message X
+	 */
+	public static sha3_ctx_t KMACXOF256_init_cached(byte[] K, byte[] S) {
+		prefix_key key = new prefix_key(K, S);
+		sha3_ctx_t c = new sha3_ctx_t();
+		sha3_init(c, 32);
+		c.cshake = true;
+		c.kmac = true;
+		synchronized (prefixCache) {
+			long[] lanes = prefixCache.get(key);
+			if (lanes != null) {
+				System.arraycopy(lanes, 0, c.st.q, 0, 25);
+				key.wipe();
+				return c;
+			}
+		}
+		
+		sha3_ctx_t fresh = KMACXOF256_init(K, S);
+		assert fresh.pt == 0; // both bytepad blocks are whole multiples of the rate
+		long[] lanes = fresh.st.q.clone();
+		synchronized (prefixCache) {
+			if (prefixCache.putIfAbsent(key, lanes) != null) {
+				key.wipe();
+				Arrays.fill(lanes, 0);
+			}
+		}
+		return fresh;
+	}
+	
+	public static byte[] KMACXOF256_cached(byte[] K, byte[] X, int L, byte[] S) {
+		sha3_ctx_t c = KMACXOF256_init_cached(K, S);
+		sha3_update(c, X, 0, X.length);
+		return squeeze(c, L);
+	}
+	
+	/**
+	 * Sets how many (K, S) prefixes KMACXOF256_init_cached keeps, least recently used go first.
+	 * @param size the new bound, 0 turns the cache off
+	 */
+	public static void setPrefixCacheSize(int size) {
+		if (size < 0)
+			throw new IllegalArgumentException("cache size " + size);
+		synchronized (prefixCache) {
+			prefixCacheSize = size;
+			trimPrefixCache(size);
+		}
+	}
+	
+	/**
+	 * Drops every cached prefix, zeroing the keys and states it held.
+	 */
+	public static void clearPrefixCache() {
+		synchronized (prefixCache) {
+			trimPrefixCache(0);
+		}
+	}
+
+	private static void trimPrefixCache(int size) {
+		Iterator<Map.Entry<prefix_key, long[]>> it = prefixCache.entrySet().iterator();
+		while (prefixCache.size() > size && it.hasNext()) {
+			Map.Entry<prefix_key, long[]> eldest = it.next();
+			eldest.getKey().wipe();
+			Arrays.fill(eldest.getValue(), 0);
+			it.remove();
+		}
+	}
+	
+	private static int prefixCacheSize = 64;
+	
+	// access ordered, so iteration starts at the least recently used prefix
+	private static final LinkedHashMap<prefix_key, long[]> prefixCache = new LinkedHashMap<>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<prefix_key, long[]> eldest) {
+			if (size() <= prefixCacheSize)
+				return false;
+			eldest.getKey().wipe();
+			Arrays.fill(eldest.getValue(), 0);
+			return true;
+		}
+	};
+	
+	// private copies of K and S, so the caller may reuse or clear their arrays
+	private static final class prefix_key {
+		final byte[] K, S;
+		final int hash;
+		
+		prefix_key(byte[] K, byte[] S) {
+			this.K = K.clone();
+			this.S = S.clone();
+			this.hash = 31 * Arrays.hashCode(K) + Arrays.hashCode(S);
+		}
+		
+		void wipe() {
+			Arrays.fill(K, (byte) 0);
+		}
+		
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof prefix_key && Arrays.equals(K, ((prefix_key) o).K) && Arrays.equals(S, ((prefix_key) o).S);
+		}
+		
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+
+	/**
+	 * Starts an incremental cSHAKE256 computation with function name N and customization string S.
+	 * When both are empty this is plain SHAKE256, as in the one-shot version.
+	 * @param N the function name
+	 * @param S the customization string
+	 * @return a context ready to absorb the message X
+	 */
+	public static sha3_ctx_t cSHAKE256_init(String N, byte[] S) {
 		if (N.length() == 0 && S.length == 0)
-			return SHAKE256(X, L);
+			return SHAKE256_init();
+		sha3_ctx_t c = new sha3_ctx_t();
+		sha3_init(c, 32);
+		c.cshake = true;
 		byte[] encodedN = encode_string(N.getBytes(StandardCharsets.US_ASCII));
 		byte[] encodedS = encode_string(S);
 		byte[] combineNS = new byte[encodedN.length + encodedS.length];
 		System.arraycopy(encodedN, 0, combineNS, 0, encodedN.length);
 		System.arraycopy(encodedS, 0, combineNS, encodedN.length, encodedS.length);
 		byte[] paddedNS = bytepad(combineNS, 136);
-		byte[] res = new byte[paddedNS.length + X.length];
-		System.arraycopy(paddedNS, 0, res, 0, paddedNS.length);
-		System.arraycopy(X, 0, res, paddedNS.length, X.length);
-		return sponge(res, L, true);
+		sha3_update(c, paddedNS, 0, paddedNS.length);
+		return c;
+	}
 
+	/**
+	 * Starts an incremental SHAKE256 computation.
+	 * @return a context ready to absorb the message
+	 */
+	public static sha3_ctx_t SHAKE256_init() {
+		sha3_ctx_t c = new sha3_ctx_t();
+		sha3_init(c, 32);
+		return c;
+	}
+
+	/**
+	 * Makes dst an exact copy of src, so one absorbed prefix can be forked into many messages
+	 * without allocating a context for each.
+	 * @param dst the context to overwrite
+	 * @param src the context to copy
+	 */
+	public static void sponge_copy(sha3_ctx_t dst, sha3_ctx_t src) {
+		System.arraycopy(src.st.q, 0, dst.st.q, 0, 25);
+		dst.pt = src.pt;
+		dst.rsiz = src.rsiz;
+		dst.mdlen = src.mdlen;
+		dst.cshake = src.cshake;
+		dst.kmac = src.kmac;
+		dst.squeezing = src.squeezing;
+	}
+
+	/**
+	 * Absorbs len bytes of data starting at off. May be called any number of times before squeezing.
+	 * @param c a context from one of the _init functions
+	 * @param data the message bytes
+	 * @param off offset of the first byte to absorb
+	 * @param len number of bytes to absorb
+	 */
+	public static void sponge_update(sha3_ctx_t c, byte[] data, int off, int len) {
+		if (c.squeezing)
+			throw new IllegalStateException("sponge is already squeezing");
+		if (off < 0 || len < 0 || off + len > data.length)
+			throw new ArrayIndexOutOfBoundsException("off " + off + ", len " + len + ", length " + data.length);
+		sha3_update(c, data, off, len);
+	}
+
+	/**
+	 * Ends the absorbing phase: KMAC appends right_encode(0) for its XOF mode, then the sponge is padded.
+	 * Called automatically by the first sponge_squeeze.
+	 * @param c a context from one of the _init functions
+	 */
+	public static void sponge_final(sha3_ctx_t c) {
+		if (c.squeezing)
+			return;
+		if (c.kmac)
+			sha3_update(c, RIGHT_ENCODE_ZERO, 0, RIGHT_ENCODE_ZERO.length);
+		shake_xof(c, c.cshake);
+		c.squeezing = true;
+	}
+
+	/**
+	 * Squeezes the next len bytes of output into out starting at off. Consecutive calls continue
+	 * the same output stream, so an XOF of any length can be read in pieces.
+	 * @param c a context from one of the _init functions
+	 * @param out destination array
+	 * @param off offset of the first output byte
+	 * @param len number of bytes to squeeze
+	 */
+	public static void sponge_squeeze(sha3_ctx_t c, byte[] out, int off, int len) {
+		if (off < 0 || len < 0 || off + len > out.length)
+			throw new ArrayIndexOutOfBoundsException("off " + off + ", len " + len + ", length " + out.length);
+		sponge_final(c);
+		shake_out(c, out, off, len);
+	}
+
+	/**
+	 * Absorbs the remaining bytes of data, from its position to its limit, and moves the
+	 * position to the limit. Heap and direct buffers (network buffers, mapped files) are read
+	 * in place a lane at a time, without copying to an array first; so is off-heap memory
+	 * held as a MemorySegment, through segment.asByteBuffer().
+	 * @param c a context from one of the _init functions
+	 * @param data the message bytes
+	 */
+	public static void sponge_update(sha3_ctx_t c, ByteBuffer data) {
+		if (c.squeezing)
+			throw new IllegalStateException("sponge is already squeezing");
+		int i = data.position(), end = data.limit();
+		if (Metrics.ENABLED) Metrics.BYTES_ABSORBED.add(end - i);
+		long[] q = c.st.q;
+		int j = c.pt;
+		while (i < end) {
+			if ((j & 7) == 0 && end - i >= 8) {
+				q[j >>> 3] ^= (long) BUFFER_LANE.get(data, i);
+				i += 8;
+				j += 8;
+			} else {
+				q[j >>> 3] ^= (data.get(i++) & 0xFFL) << ((j & 7) << 3);
+				j++;
+			}
+			if (j >= c.rsiz) {
+				sha3_keccakf(q);
+				j = 0;
+			}
+		}
+		c.pt = j;
+		data.position(end);
+	}
+
+	/**
+	 * Squeezes output into out from its position to its limit, lane at a time, and moves the
+	 * position to the limit. Continues the same output stream as the byte[] version.
+	 * @param c a context from one of the _init functions
+	 * @param out destination buffer, heap or direct
+	 * @throws ReadOnlyBufferException if out is read-only
+	 */
+	public static void sponge_squeeze(sha3_ctx_t c, ByteBuffer out) {
+		if (out.isReadOnly())
+			throw new ReadOnlyBufferException();
+		sponge_final(c);
+		int i = out.position(), end = out.limit();
+		if (Metrics.ENABLED) Metrics.BYTES_SQUEEZED.add(end - i);
+		long[] q = c.st.q;
+		int j = c.pt;
+		while (i < end) {
+			if (j >= c.rsiz) {
+				sha3_keccakf(q);
+				j = 0;
+			}
+			if ((j & 7) == 0 && end - i >= 8) {
+				BUFFER_LANE.set(out, i, q[j >>> 3]);
+				i += 8;
+				j += 8;
+			} else {
+				out.put(i++, (byte) (q[j >>> 3] >>> ((j & 7) << 3)));
+				j++;
+			}
+		}
+		c.pt = j;
+		out.position(end);
+	}
+
+	public static byte[] KMACXOF256(byte[] K, byte[] X, int L, byte[] S) {
+		sha3_ctx_t c = KMACXOF256_init(K, S);
+		sha3_update(c, X, 0, X.length);
+		return squeeze(c, L);
+	}
+
+	/**
+	 * KMACXOF256 of the remaining bytes of X, read in place; X's position ends at its limit.
+	 */
+	public static byte[] KMACXOF256(byte[] K, ByteBuffer X, int L, byte[] S) {
+		sha3_ctx_t c = KMACXOF256_init(K, S);
+		sponge_update(c, X);
+		return squeeze(c, L);
+	}
+
+	private static byte[] cSHAKE256(byte[] X, int L, String N, byte[] S) {
+		sha3_ctx_t c = cSHAKE256_init(N, S);
+		sha3_update(c, X, 0, X.length);
+		return squeeze(c, L);
 	}
 
 	private static byte[] SHAKE256(byte[] M, int d) {
-		byte[] res = new byte[M.length];
-		System.arraycopy(M, 0, res, 0, M.length);
-		return sponge(res, d, false);
+		sha3_ctx_t c = SHAKE256_init();
+		sha3_update(c, M, 0, M.length);
+		return squeeze(c, d);
 	}
 
-	private static byte[] sponge(byte[] data, int d, boolean flag) {
+	private static byte[] squeeze(sha3_ctx_t c, int d) {
 		int byteLength = d / 8;
 		byte[] output = new byte[byteLength];
-		sha3_ctx_t sha3 = new sha3_ctx_t();
-		sha3_init(sha3, 32);
-		sha3_update(sha3, data, data.length);
-		shake_xof(sha3, flag);
-		shake_out(sha3, output, byteLength);
-
+		sponge_squeeze(c, output, 0, byteLength);
 		return output;
 	}
 
@@ -226,7 +558,7 @@ public class Keccak {
 		return z;
 	}
 
-	private static byte[] right_encode(BigInteger x) {
+	static byte[] right_encode(BigInteger x) {
 		// assert x.signum() > 0; // 2^2040
 		if (x.equals(BigInteger.ZERO))
 			return new byte[] { 0, 1 };
@@ -251,7 +583,7 @@ public class Keccak {
 
 	}
 
-	private static byte[] left_encode(BigInteger x) {
+	static byte[] left_encode(BigInteger x) {
 		// assert x.signum() > 0; // 2^2040
 		if (x.equals(BigInteger.ZERO))
 			return new byte[] { 1, 0 };
@@ -0,0 +1,176 @@
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * 
+ * Multi-buffer Keccak: LANES independent sponge states permuted side by side
+ * 
+ * States are interleaved lane by lane, lane i of state k at st[i * LANES + k], so
+ * the permutation can run them through SIMD registers. KeccakVector provides that
+ * permutation on the incubating Vector API. It is opt-in: run with
+ * --add-modules jdk.incubator.vector -Dkeccak.vector=true. On the hardware measured so
+ * far the interleaved permutation is slower than the scalar one, which is why BatchHash
+ * and Main do not go through this class.
+ * 
+ * The batch KMACXOF256 front end feeds it with groups of equal-length messages. Without
+ * the Vector API there is nothing to gain from interleaving, so the front end hashes
+ * every message with the scalar sponge and LANES is 1.
+ * 
+ * @authors Lindsay Ding, Alan Thompson, Christopher Henderson
+ *
+ */
+public class KeccakMulti {
+
+	/** Number of states permuted together, 1 without the Vector API */
+	public static final int LANES;
+
+	// KeccakVector.keccakf(long[]), or null for the scalar fallback
+	private static final MethodHandle VECTOR_KECCAKF;
+
+	private static final int RATE = 136, RATE_LANES = RATE / 8;
+
+	private static final VarHandle LANE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+	static {
+		MethodHandle keccakf = null;
+		int lanes = 1;
+		if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()
+				&& Boolean.getBoolean("keccak.vector")) {
+			try {
+				Class<?> vector = Class.forName("KeccakVector");
+				MethodHandles.Lookup lookup = MethodHandles.lookup();
+				int w = (int) lookup.findStatic(vector, "lanes", MethodType.methodType(int.class)).invokeExact();
+				if (w > 1) {
+					keccakf = lookup.findStatic(vector, "keccakf", MethodType.methodType(void.class, long[].class));
+					lanes = w;
+				}
+			} catch (Throwable notCompiledOrNoVectors) {
+				keccakf = null;
+			}
+		}
+		VECTOR_KECCAKF = keccakf;
+		LANES = lanes;
+	}
+
+	/**
+	 * @return true if the multi-buffer permutation is available on the Vector API
+	 */
+	public static boolean isVectorized() {
+		return VECTOR_KECCAKF != null;
+	}
+
+	/**
+	 * Keccak-f[1600] on LANES interleaved states, in place.
+	 * @param st 25 * LANES longs, lane i of state k at st[i * LANES + k]
+	 * @throws UnsupportedOperationException if isVectorized() is false
+	 */
+	public static void keccakf(long[] st) {
+		if (VECTOR_KECCAKF == null)
+			throw new UnsupportedOperationException("no Vector API, use Keccak.sha3_keccakf");
+		if (Metrics.ENABLED) Metrics.PERMUTATIONS.add(LANES);
+		try {
+			VECTOR_KECCAKF.invokeExact(st);
+		} catch (Throwable t) {
+			throw new IllegalStateException(t);
+		}
+	}
+
+	/**
+	 * KMACXOF256 of every message in X under one key and customization string.
+	 * Messages are grouped by length and each full group of LANES equal-length messages goes
+	 * through the multi-buffer permutation; the few left over, and all of them without the
+	 * Vector API, are hashed one at a time.
+	 * @param K the key
+	 * @param X the messages
+	 * @param L output length of each digest in bits
+	 * @param S the customization string
+	 * @return one L/8 byte digest per message, in the order of X
+	 */
+	public static byte[][] KMACXOF256(byte[] K, byte[][] X, int L, byte[] S) {
+		int outLen = L / 8;
+		byte[][] digests = new byte[X.length][];
+		Keccak.sha3_ctx_t prefix = Keccak.KMACXOF256_init_cached(K, S);
+
+		// message indexes sorted by length, so equal lengths sit next to each other
+		long[] order = new long[X.length];
+		for (int i = 0; i < X.length; i++)
+			order[i] = ((long) X[i].length << 32) | i;
+		Arrays.sort(order);
+
+		long[] st = new long[25 * LANES];
+		int[] group = new int[LANES];
+		int run = 0;
+		while (run < order.length) {
+			int len = (int) (order[run] >>> 32), end = run;
+			while (end < order.length && (int) (order[end] >>> 32) == len)
+				end++;
+			for (; VECTOR_KECCAKF != null && run + LANES <= end; run += LANES) {
+				for (int k = 0; k < LANES; k++)
+					group[k] = (int) order[run + k];
+				hashGroup(prefix, X, group, len, st, outLen, digests);
+			}
+			Keccak.sha3_ctx_t c = new Keccak.sha3_ctx_t();
+			for (; run < end; run++) {
+				int i = (int) order[run];
+				Keccak.sponge_copy(c, prefix);
+				Keccak.sponge_update(c, X[i], 0, len);
+				digests[i] = new byte[outLen];
+				Keccak.sponge_squeeze(c, digests[i], 0, outLen);
+			}
+		}
+		return digests;
+	}
+
+	// absorbs, pads and squeezes LANES messages of the same length side by side
+	private static void hashGroup(Keccak.sha3_ctx_t prefix, byte[][] X, int[] group, int len, long[] st, int outLen, byte[][] digests) {
+		for (int i = 0; i < 25; i++)
+			Arrays.fill(st, i * LANES, (i + 1) * LANES, prefix.st.q[i]);
+
+		// the rest of each message after its whole blocks, then right_encode(0) and the cSHAKE padding 0x04 ... 0x80
+		int full = len / RATE, rem = len - full * RATE, tailLen = rem + 2;
+		int tailBlocks = tailLen / RATE + 1;
+		byte[][] tails = new byte[LANES][tailBlocks * RATE];
+		for (int k = 0; k < LANES; k++) {
+			System.arraycopy(X[group[k]], full * RATE, tails[k], 0, rem);
+			tails[k][rem + 1] = 1;
+			tails[k][tailLen] ^= 0x04;
+			tails[k][tails[k].length - 1] ^= (byte) 0x80;
+		}
+
+		// the KMAC prefix leaves the sponge on a block boundary, so the blocks line up for every message
+		for (int b = 0; b < full + tailBlocks; b++) {
+			for (int k = 0; k < LANES; k++) {
+				byte[] m = b < full ? X[group[k]] : tails[k];
+				int off = b < full ? b * RATE : (b - full) * RATE;
+				for (int i = 0; i < RATE_LANES; i++)
+					st[i * LANES + k] ^= (long) LANE.get(m, off + 8 * i);
+			}
+			keccakf(st);
+		}
+
+		if (Metrics.ENABLED) {
+			Metrics.BYTES_ABSORBED.add((long) len * LANES);
+			Metrics.BYTES_SQUEEZED.add((long) outLen * LANES);
+		}
+
+		// squeeze
+		for (int k = 0; k < LANES; k++)
+			digests[group[k]] = new byte[outLen];
+		byte[] block = new byte[RATE];
+		for (int off = 0; off < outLen; off += RATE) {
+			if (off > 0)
+				keccakf(st);
+			int n = Math.min(RATE, outLen - off);
+			for (int k = 0; k < LANES; k++) {
+				for (int i = 0; i < RATE_LANES; i++)
+					LANE.set(block, 8 * i, st[i * LANES + k]);
+				System.arraycopy(block, 0, digests[group[k]], off, n);
+			}
+		}
+	}
+
+}
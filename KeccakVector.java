@@ -0,0 +1,143 @@
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * 
+ * Multi-buffer Keccak-f[1600] on the incubating Java Vector API
+ * 
+ * Permutes LANES independent states at once, one state per SIMD lane: 2, 4 or 8 of them
+ * depending on the CPU's preferred vector width. Only loaded by KeccakMulti when the
+ * jdk.incubator.vector module is present, so this class has to be compiled and run with
+ *     --add-modules jdk.incubator.vector
+ * 
+ * @authors Lindsay Ding, Alan Thompson, Christopher Henderson
+ *
+ */
+public class KeccakVector {
+
+	private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+
+	private static final long[] keccakf_rndc = { 0x0000000000000001L, 0x0000000000008082L, 0x800000000000808aL,
+			0x8000000080008000L, 0x000000000000808bL, 0x0000000080000001L, 0x8000000080008081L, 0x8000000000008009L,
+			0x000000000000008aL, 0x0000000000000088L, 0x0000000080008009L, 0x000000008000000aL, 0x000000008000808bL,
+			0x800000000000008bL, 0x8000000000008089L, 0x8000000000008003L, 0x8000000000008002L, 0x8000000000000080L,
+			0x000000000000800aL, 0x800000008000000aL, 0x8000000080008081L, 0x8000000000008080L, 0x0000000080000001L,
+			0x8000000080008008L };
+
+	/**
+	 * @return the number of states permuted at once
+	 */
+	public static int lanes() {
+		return SPECIES.length();
+	}
+
+	private static LongVector rotl(LongVector x, int y) {
+		return x.lanewise(VectorOperators.ROL, y);
+	}
+
+	private static LongVector xor(LongVector x, LongVector y) {
+		return x.lanewise(VectorOperators.XOR, y);
+	}
+
+	// x ^ (~y & z)
+	private static LongVector chi(LongVector x, LongVector y, LongVector z) {
+		return x.lanewise(VectorOperators.XOR, z.lanewise(VectorOperators.AND_NOT, y));
+	}
+
+	/**
+	 * Keccak-f[1600] on lanes() interleaved states, in place.
+	 * Lane i of state k is st[i * lanes() + k], the layout KeccakMulti uses.
+	 * Same unrolled round as Keccak.sha3_keccakf, with every long replaced by a vector.
+	 * @param st 25 * lanes() longs
+	 */
+	public static void keccakf(long[] st) {
+		final int w = SPECIES.length();
+		LongVector a00 = LongVector.fromArray(SPECIES, st,  0 * w), a01 = LongVector.fromArray(SPECIES, st,  1 * w);
+		LongVector a02 = LongVector.fromArray(SPECIES, st,  2 * w), a03 = LongVector.fromArray(SPECIES, st,  3 * w);
+		LongVector a04 = LongVector.fromArray(SPECIES, st,  4 * w), a05 = LongVector.fromArray(SPECIES, st,  5 * w);
+		LongVector a06 = LongVector.fromArray(SPECIES, st,  6 * w), a07 = LongVector.fromArray(SPECIES, st,  7 * w);
+		LongVector a08 = LongVector.fromArray(SPECIES, st,  8 * w), a09 = LongVector.fromArray(SPECIES, st,  9 * w);
+		LongVector a10 = LongVector.fromArray(SPECIES, st, 10 * w), a11 = LongVector.fromArray(SPECIES, st, 11 * w);
+		LongVector a12 = LongVector.fromArray(SPECIES, st, 12 * w), a13 = LongVector.fromArray(SPECIES, st, 13 * w);
+		LongVector a14 = LongVector.fromArray(SPECIES, st, 14 * w), a15 = LongVector.fromArray(SPECIES, st, 15 * w);
+		LongVector a16 = LongVector.fromArray(SPECIES, st, 16 * w), a17 = LongVector.fromArray(SPECIES, st, 17 * w);
+		LongVector a18 = LongVector.fromArray(SPECIES, st, 18 * w), a19 = LongVector.fromArray(SPECIES, st, 19 * w);
+		LongVector a20 = LongVector.fromArray(SPECIES, st, 20 * w), a21 = LongVector.fromArray(SPECIES, st, 21 * w);
+		LongVector a22 = LongVector.fromArray(SPECIES, st, 22 * w), a23 = LongVector.fromArray(SPECIES, st, 23 * w);
+		LongVector a24 = LongVector.fromArray(SPECIES, st, 24 * w);
+		LongVector bc0, bc1, bc2, bc3, bc4, t;
+
+		for (int r = 0; r < Keccak.KECCAKF_ROUNDS; r++) {
+
+			// Theta
+			bc0 = xor(xor(xor(xor(a00, a05), a10), a15), a20);
+			bc1 = xor(xor(xor(xor(a01, a06), a11), a16), a21);
+			bc2 = xor(xor(xor(xor(a02, a07), a12), a17), a22);
+			bc3 = xor(xor(xor(xor(a03, a08), a13), a18), a23);
+			bc4 = xor(xor(xor(xor(a04, a09), a14), a19), a24);
+
+			t = xor(bc4, rotl(bc1, 1));
+			a00 = xor(a00, t); a05 = xor(a05, t); a10 = xor(a10, t); a15 = xor(a15, t); a20 = xor(a20, t);
+			t = xor(bc0, rotl(bc2, 1));
+			a01 = xor(a01, t); a06 = xor(a06, t); a11 = xor(a11, t); a16 = xor(a16, t); a21 = xor(a21, t);
+			t = xor(bc1, rotl(bc3, 1));
+			a02 = xor(a02, t); a07 = xor(a07, t); a12 = xor(a12, t); a17 = xor(a17, t); a22 = xor(a22, t);
+			t = xor(bc2, rotl(bc4, 1));
+			a03 = xor(a03, t); a08 = xor(a08, t); a13 = xor(a13, t); a18 = xor(a18, t); a23 = xor(a23, t);
+			t = xor(bc3, rotl(bc0, 1));
+			a04 = xor(a04, t); a09 = xor(a09, t); a14 = xor(a14, t); a19 = xor(a19, t); a24 = xor(a24, t);
+
+			// Rho Pi
+			t = a01;
+			a01 = rotl(a06, 44);
+			a06 = rotl(a09, 20);
+			a09 = rotl(a22, 61);
+			a22 = rotl(a14, 39);
+			a14 = rotl(a20, 18);
+			a20 = rotl(a02, 62);
+			a02 = rotl(a12, 43);
+			a12 = rotl(a13, 25);
+			a13 = rotl(a19,  8);
+			a19 = rotl(a23, 56);
+			a23 = rotl(a15, 41);
+			a15 = rotl(a04, 27);
+			a04 = rotl(a24, 14);
+			a24 = rotl(a21,  2);
+			a21 = rotl(a08, 55);
+			a08 = rotl(a16, 45);
+			a16 = rotl(a05, 36);
+			a05 = rotl(a03, 28);
+			a03 = rotl(a18, 21);
+			a18 = rotl(a17, 15);
+			a17 = rotl(a11, 10);
+			a11 = rotl(a07,  6);
+			a07 = rotl(a10,  3);
+			a10 = rotl(t,    1);
+
+			// Chi
+			bc0 = a00; bc1 = a01;
+			a00 = chi(a00, a01, a02); a01 = chi(a01, a02, a03); a02 = chi(a02, a03, a04); a03 = chi(a03, a04, bc0); a04 = chi(a04, bc0, bc1);
+			bc0 = a05; bc1 = a06;
+			a05 = chi(a05, a06, a07); a06 = chi(a06, a07, a08); a07 = chi(a07, a08, a09); a08 = chi(a08, a09, bc0); a09 = chi(a09, bc0, bc1);
+			bc0 = a10; bc1 = a11;
+			a10 = chi(a10, a11, a12); a11 = chi(a11, a12, a13); a12 = chi(a12, a13, a14); a13 = chi(a13, a14, bc0); a14 = chi(a14, bc0, bc1);
+			bc0 = a15; bc1 = a16;
+			a15 = chi(a15, a16, a17); a16 = chi(a16, a17, a18); a17 = chi(a17, a18, a19); a18 = chi(a18, a19, bc0); a19 = chi(a19, bc0, bc1);
+			bc0 = a20; bc1 = a21;
+			a20 = chi(a20, a21, a22); a21 = chi(a21, a22, a23); a22 = chi(a22, a23, a24); a23 = chi(a23, a24, bc0); a24 = chi(a24, bc0, bc1);
+
+			// Iota
+			a00 = a00.lanewise(VectorOperators.XOR, keccakf_rndc[r]);
+		}
+
+		a00.intoArray(st,  0 * w); a01.intoArray(st,  1 * w); a02.intoArray(st,  2 * w); a03.intoArray(st,  3 * w);
+		a04.intoArray(st,  4 * w); a05.intoArray(st,  5 * w); a06.intoArray(st,  6 * w); a07.intoArray(st,  7 * w);
+		a08.intoArray(st,  8 * w); a09.intoArray(st,  9 * w); a10.intoArray(st, 10 * w); a11.intoArray(st, 11 * w);
+		a12.intoArray(st, 12 * w); a13.intoArray(st, 13 * w); a14.intoArray(st, 14 * w); a15.intoArray(st, 15 * w);
+		a16.intoArray(st, 16 * w); a17.intoArray(st, 17 * w); a18.intoArray(st, 18 * w); a19.intoArray(st, 19 * w);
+		a20.intoArray(st, 20 * w); a21.intoArray(st, 21 * w); a22.intoArray(st, 22 * w); a23.intoArray(st, 23 * w);
+		a24.intoArray(st, 24 * w);
+	}
+
+}
@@ -0,0 +1,196 @@
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ * Session keyring of passphrase-derived key pairs
+ *
+ * The private scalar s = 4 * KMACXOF256(pw, "", 512, "SK") mod r and the public key
+ * V = s*G are derived once per passphrase and kept for a time to live (10 minutes by
+ * default, -Dkeyring.ttl=millis or setTTL), after which a background thread zeroes s
+ * and drops the pair. At most MAX_KEYS pairs are kept (-Dkeyring.max, 1024 by default);
+ * past that the least recently used one is zeroed and dropped early, so callers with ever
+ * new passphrases (daemon clients) cannot grow the keyring without bound. Entries are
+ * found by a digest of the passphrase, the passphrase itself is not kept. s is held as
+ * bytes so it can be zeroed.
+ *
+ * get() hands out a Key, a copy of the pair taken under the entry's lock: it stays valid
+ * however soon the entry expires, and its BigInteger s is the caller's to drop.
+ *
+ * The public key is a PublicKeyCache.Entry, so its window table is built on first use
+ * and kept with the pair.
+ *
+ * @authors Lindsay Ding, Alan Thompson, Christopher Henderson
+ *
+ */
+public class Keyring {
+
+	/** Most key pairs kept at once */
+	static final int MAX_KEYS = Integer.getInteger("keyring.max", 1024);
+
+	/**
+	 * A derived key pair
+	 */
+	public static final class Key {
+		private final BigInteger s;
+		private final PublicKeyCache.Entry V;
+
+		Key(BigInteger s, PublicKeyCache.Entry V) {
+			this.s = s;
+			this.V = V;
+		}
+
+		/**
+		 * @return the private scalar s
+		 */
+		public BigInteger s() {
+			return s;
+		}
+
+		/**
+		 * @return the public key V = s*G, with its lazily built window table
+		 */
+		public PublicKeyCache.Entry publicKey() {
+			return V;
+		}
+	}
+
+	// a kept pair: s zeroed on expiry, eviction or clear
+	private static final class Held {
+		private final byte[] s;
+		private final PublicKeyCache.Entry V;
+		private boolean wiped;
+		ScheduledFuture<?> expiring;
+
+		Held(BigInteger s, Point V) {
+			this.s = s.toByteArray();
+			this.V = new PublicKeyCache.Entry(V, PublicKeyCache.fingerprint(util.pointDataZip(V)));
+		}
+
+		// null once wiped
+		synchronized Key key() {
+			return wiped ? null : new Key(new BigInteger(s), V);
+		}
+
+		synchronized void wipe() {
+			Arrays.fill(s, (byte) 0);
+			wiped = true;
+			if (expiring != null)
+				expiring.cancel(false);
+		}
+	}
+
+	private static long ttl = Long.getLong("keyring.ttl", 10 * 60 * 1000);
+
+	// in access order, so the eldest entry is the least recently used
+	@SuppressWarnings("serial")
+	private static final Map<String, Held> keys = new LinkedHashMap<>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Held> eldest) {
+			if (size() <= MAX_KEYS)
+				return false;
+			eldest.getValue().wipe();
+			return true;
+		}
+	};
+
+	// zeroes keys as they expire; a daemon thread, so it never keeps the JVM alive
+	private static final ScheduledThreadPoolExecutor expiry = new ScheduledThreadPoolExecutor(1, r -> {
+		Thread t = new Thread(r, "keyring-expiry");
+		t.setDaemon(true);
+		return t;
+	});
+
+	static {
+		expiry.setRemoveOnCancelPolicy(true); // a key dropped early takes its timer with it
+	}
+
+	/**
+	 * The key pair of a passphrase, derived on first use and then kept for the TTL.
+	 * @param pw the passphrase
+	 * @return s and V for pw
+	 */
+	public static Key get(byte[] pw) {
+		String id = digest(pw);
+		synchronized (keys) {
+			Held held = keys.get(id);
+			Key key = held != null ? held.key() : null;
+			if (key != null)
+				return key;
+		}
+		BigInteger s = deriveScalar(pw); // derived outside the lock, other lookups go on meanwhile
+		Held held = new Held(s, util.pointMultiplyByScalar(Point.G, s));
+		Key key = held.key();
+		synchronized (keys) {
+			if (ttl == 0 || keys.containsKey(id)) { // not kept, or raced by another caller that keeps the same pair
+				held.wipe();
+				return key;
+			}
+			keys.put(id, held);
+			held.expiring = expiry.schedule(() -> evict(id, held), ttl, TimeUnit.MILLISECONDS);
+		}
+		return key;
+	}
+
+	/**
+	 * s = 4 * KMACXOF256(pw, "", 512, "SK") mod r, without caching
+	 * @param pw the passphrase
+	 * @return the private scalar for pw
+	 */
+	public static BigInteger deriveScalar(byte[] pw) {
+		BigInteger pre_s = util.bytesToBigInt(Keccak.KMACXOF256(pw, Main.$NULL, 512, Main.$SK));
+		return (pre_s.multiply(BigInteger.valueOf(4))).mod(Point.r); // (4 * s) mod r
+	}
+
+	/**
+	 * Sets how long newly derived keys are kept; keys already held keep their deadline.
+	 * @param millis the time to live, 0 keeps nothing
+	 */
+	public static void setTTL(long millis) {
+		if (millis < 0)
+			throw new IllegalArgumentException("ttl " + millis);
+		synchronized (keys) {
+			ttl = millis;
+		}
+	}
+
+	/**
+	 * Zeroes and drops every key now.
+	 */
+	public static void clear() {
+		synchronized (keys) {
+			for (Held held : keys.values())
+				held.wipe();
+			keys.clear();
+		}
+	}
+
+	public static int size() {
+		synchronized (keys) {
+			return keys.size();
+		}
+	}
+
+	private static void evict(String id, Held held) {
+		synchronized (keys) {
+			keys.remove(id, held);
+		}
+		held.wipe();
+	}
+
+	// the map key: a digest of the passphrase under its own customization string
+	private static String digest(byte[] pw) {
+		Keccak.sha3_ctx_t c = Keccak.cSHAKE256_init("", "keyring".getBytes());
+		Keccak.sponge_update(c, pw, 0, pw.length);
+		Keccak.sponge_final(c);
+		byte[] d = new byte[32];
+		Keccak.sponge_squeeze(c, d, 0, d.length);
+		return HexFormat.of().formatHex(d);
+	}
+}
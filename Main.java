@@ -1,8 +1,9 @@
 
-import java.math.BigInteger;
-import java.security.SecureRandom;
-import java.util.Arrays;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * 
@@ -26,8 +27,10 @@ public class Main {
 
 	private static void opt1_FileHash() {
 		System.out.println(FILE_NOTES);
-		byte[] m = loadFile("hash");
-		byte[] out = Keccak.KMACXOF256($NULL, m, 512, $D);
+		String path = loadFilePath("hash");
+		byte[] out;
+		try {out = Operations.hashFile(path);}
+		catch (IOException e) {System.out.println(FILE_NOT_FOUND); return;}
 		
 		printOutput(out);
 	}
@@ -35,7 +38,7 @@ public class Main {
 	private static void opt2_ConsoleHash() {
 		String input = getConsoleString(CONSOLE_GET);
 		byte[] m = input.getBytes();
-		byte[] out = Keccak.KMACXOF256($NULL, m, 512, $D);
+		byte[] out = Operations.hash(m);
 		
 		printOutput(out);
 	}
@@ -43,9 +46,11 @@ public class Main {
 	private static void opt3_FileMAC() {
 		System.out.println(FILE_NOTES);
 		String passPhrase = getConsoleString(PASSPHRASE);
-		byte[] m = loadFile("generate a MAC for");
+		String path = loadFilePath("generate a MAC for");
 		byte[] pw = passPhrase.getBytes();
-		byte[] out = Keccak.KMACXOF256(pw, m, 512, $T); // outputs a 512-bit string
+		byte[] out; // outputs a 512-bit string
+		try {out = Operations.macFile(path, pw);}
+		catch (IOException e) {System.out.println(FILE_NOT_FOUND); return;}
 		
 		printOutput(out);
 	}
@@ -55,72 +60,36 @@ public class Main {
 		String passPhrase = getConsoleString(PASSPHRASE);
 		byte[] m = input.getBytes();
 		byte[] pw = passPhrase.getBytes();
-		byte[] out = Keccak.KMACXOF256(pw, m, 512, $T); // outputs a 512-bit string
+		byte[] out = Operations.mac(m, pw); // outputs a 512-bit string
 		
 		printOutput(out);
 	}
 	
 	private static void opt5_EncryptFile() {
 		System.out.println(FILE_NOTES);
-		byte[] m = loadFile("encrypt");
+		String path = loadFilePath("encrypt");
 		String passPhrase = getConsoleString(PASSPHRASE);
 		String saveAsFile = getUserFileName("encrypted", "save");
 		
 		byte[] pw = passPhrase.getBytes();
 		
-		int byteLen = 512 / 8;
-		
-		SecureRandom random = new SecureRandom();
-		byte[] z = new byte[byteLen];
-		random.nextBytes(z);
-		
-		byte[] z_pw = util.concatBytes(z, pw);
-		
-		byte[] ke_ka = Keccak.KMACXOF256(z_pw, $NULL, 1024, $S);
-		byte[] ke = Arrays.copyOfRange(ke_ka, 0, byteLen/2);
-		byte[] ka = Arrays.copyOfRange(ke_ka, byteLen/2, byteLen);
-		
-		byte[] c_pre = Keccak.KMACXOF256(ke, $NULL, m.length * 8, $SKE);
-		
-		byte[] c = util.xorBytes(c_pre, m);
-		
-		byte[] t = Keccak.KMACXOF256(ka, m, 512, $SKA);
-		
-		byte[] Cryptogram = util.concatBytes(z,t,c);
-		
-		util.writeByteData(saveAsFile, Cryptogram);
+		try {Operations.encryptFile(path, saveAsFile, pw);}
+		catch (Exception e) {System.out.println(FILE_NOT_FOUND);}
 	}
 	
 	private static void opt6_DecryptFile() {
 		System.out.println(FILE_NOTES);
-		byte[] decryptFile = loadFile("encrypted", "load");
+		String path = loadFilePath("encrypted", "load");
 		String passPhrase = getConsoleString(PASSPHRASE);
 		String saveAsFile = getUserFileName("decrypted", "save");
 		
-		
-		byte[][] cryptGrams = util.symmetricCryptogramOpener(decryptFile);
-		byte[] z = cryptGrams[0];
-		byte[] t = cryptGrams[1];
-		byte[] c = cryptGrams[2];
-		
-		int byteLen = 512 / 8;
-		
 		byte[] pw = passPhrase.getBytes();
-		byte[] z_pw = util.concatBytes(z, pw);
-		
-		byte[] ke_ka = Keccak.KMACXOF256(z_pw, $NULL, 1024, $S);
-		byte[] ke = Arrays.copyOfRange(ke_ka, 0, byteLen/2);
-		byte[] ka = Arrays.copyOfRange(ke_ka, byteLen/2, byteLen);
-		
-		byte[] m_pre = Keccak.KMACXOF256(ke, $NULL, c.length * 8, $SKE);
-		byte[] m = util.xorBytes(m_pre, c);
-		byte[] t_p = Keccak.KMACXOF256(ka, m, 512, $SKA);
 		
-		if (Arrays.equals(t_p, t)) {
-			System.out.println(new String(m));
-			util.writeByteData(saveAsFile, m);
+		try {
+			if (!Operations.decryptFile(path, saveAsFile, pw))
+				System.out.println(PASS_WRONG);
 		}
-		else System.out.println(PASS_WRONG);
+		catch (Exception e) {System.out.println(FILE_NOT_ENCRYPTED);}
 	}
 	
 	// Generate an elliptic key pair from a given pass phrase and write the public key to a file.
@@ -131,38 +100,12 @@ public class Main {
 		String publicKeyFile = getUserFileName("key", "save");
 		
 		byte[] pw = passPhrase.getBytes();
-		BigInteger pre_s = util.bytesToBigInt(Keccak.KMACXOF256(pw, $NULL, 512, $SK));
-		
-		// s is the private key
-		BigInteger s = (pre_s.multiply(BigInteger.valueOf(4))).mod(Point.r); // (4 * s) mod r
-		
-		// V is the public key
-		Point V = util.pointMultiplyByScalar(Point.G, s);
-
-		util.writeByteData(publicKeyFile, util.pointDataZip(V));
 		
 		boolean extra = getYesNoInput(OPT7_EXTRA);
-		if (extra) {
-			String privateKeyFile = getUserFileName("encrypted private key", "save");
-			SecureRandom random = new SecureRandom();
-			int byteLen = 512 / 8;
-			
-			byte[] m = s.toByteArray();
-			byte[] z = new byte[byteLen];
-			
-			random.nextBytes(z);
-			
-			byte[] z_pw = util.concatBytes(z, pw);
-			byte[] ke_ka = Keccak.KMACXOF256(z_pw, $NULL, 1024, $S);
-			byte[] ke = Arrays.copyOfRange(ke_ka, 0, byteLen/2);
-			byte[] ka = Arrays.copyOfRange(ke_ka, byteLen/2, byteLen);
-			byte[] c_pre = Keccak.KMACXOF256(ke, $NULL, m.length * 8, $SKE);
-			byte[] c = util.xorBytes(c_pre, m);
-			byte[] t = Keccak.KMACXOF256(ka, m, 512, $SKA);
-			byte[] Cryptogram = util.concatBytes(z,t,c);
-			
-			util.writeByteData(privateKeyFile, Cryptogram);
-		}
+		String privateKeyFile = extra ? getUserFileName("encrypted private key", "save") : null;
+		
+		try {Operations.generateKey(pw, publicKeyFile, privateKeyFile);}
+		catch (IOException e) {System.out.println(FILE_NOT_FOUND);}
 	}
 	
 	// Encrypt a data file under a given elliptic public key file and write the ciphertext to a file.
@@ -173,29 +116,10 @@ public class Main {
 		
 		String saveAsFile = getUserFileName("encrypted", "save");
 		
-		SecureRandom random = new SecureRandom();
-		final int byteLen = 512 / 8;
-		byte[] pre_k = new byte[byteLen];
-		random.nextBytes(pre_k);
-		
-		BigInteger k = (util.bytesToBigInt(pre_k).multiply(BigInteger.valueOf(4))).mod(Point.r); // (4 * k) mod r
-		Point V = util.pointDataUnzip(keyFile);
+		byte[] Cryptogram;
+		try {Cryptogram = Operations.encryptElliptic(encryptFile, keyFile);}
+		catch (IllegalArgumentException e) {System.out.println(NAUGHTY); return;}
 		
-		byte[] m = encryptFile;
-		
-		Point W = util.pointMultiplyByScalar(V, k);
-		Point Z = util.pointMultiplyByScalar(Point.G, k);
-		
-		byte[] ke_ka = Keccak.KMACXOF256(W.modPtoBytes(), $NULL, 1024, $PK); // W_x mod p
-		byte[] ke = Arrays.copyOfRange(ke_ka, 0, byteLen/2);
-		byte[] ka = Arrays.copyOfRange(ke_ka, byteLen/2, byteLen);
-		
-		byte[] c_pre = Keccak.KMACXOF256(ke, $NULL, m.length * 8, $PKE);
-		byte[] c = util.xorBytes(c_pre, m);
-		
-		byte[] t = Keccak.KMACXOF256(ka, m, 512, $PKA);
-
-		byte[] Cryptogram = util.concatBytes(util.pointDataZip(Z), t, c);
 		util.writeByteData(saveAsFile, Cryptogram);
 	}
 	
@@ -207,29 +131,12 @@ public class Main {
 		byte[] keyFile = loadFile("key", "use");
 		String saveAsFile = getUserFileName("encrypted", "save");
 		
-		SecureRandom random = new SecureRandom();
-		final int byteLen = 512 / 8;
-		byte[] pre_k = new byte[byteLen];
-		random.nextBytes(pre_k);
-		
-		BigInteger k = (util.bytesToBigInt(pre_k).multiply(BigInteger.valueOf(4))).mod(Point.r); // (4 * k) mod r
-		Point V = util.pointDataUnzip(keyFile);
-		
 		byte[] m = input.getBytes();
 		
-		Point W = util.pointMultiplyByScalar(V, k);
-		Point Z = util.pointMultiplyByScalar(Point.G, k);
-		
-		byte[] ke_ka = Keccak.KMACXOF256(W.modPtoBytes(), $NULL, 1024, $PK); // W_x mod p
-		byte[] ke = Arrays.copyOfRange(ke_ka, 0, byteLen/2);
-		byte[] ka = Arrays.copyOfRange(ke_ka, byteLen/2, byteLen);
+		byte[] Cryptogram;
+		try {Cryptogram = Operations.encryptElliptic(m, keyFile);}
+		catch (IllegalArgumentException e) {System.out.println(NAUGHTY); return;}
 		
-		byte[] c_pre = Keccak.KMACXOF256(ke, $NULL, m.length * 8, $PKE);
-		byte[] c = util.xorBytes(c_pre, m);
-		
-		byte[] t = Keccak.KMACXOF256(ka, m, 512, $PKA);
-
-		byte[] Cryptogram = util.concatBytes(util.pointDataZip(Z), t, c);
 		util.writeByteData(saveAsFile, Cryptogram);
 	}
 	
@@ -237,33 +144,16 @@ public class Main {
 	private static void opt10_DecryptFileElliptic() {
 		System.out.println(FILE_NOTES);
 
-		byte[][] gramData = loadCryptogram("encrypted", "load");
+		byte[] gram = loadCryptogram("encrypted", "load");
 		String passPhrase = getConsoleString(PASSPHRASE);
 		
-		byte[] z_bytes = gramData[0];
-		byte[] t = gramData[1];
-		byte[] c = gramData[2];
-		
-		Point Z = util.pointDataUnzip(z_bytes);
-
 		byte[] pw = passPhrase.getBytes();
-		BigInteger pre_s = util.bytesToBigInt(Keccak.KMACXOF256(pw, $NULL, 512, $SK));
-		
-		// s is the private key
-		BigInteger s = (pre_s.multiply(BigInteger.valueOf(4))).mod(Point.r);
-		
-		Point W = util.pointMultiplyByScalar(Z, s);
-
-		int byteLen = 512 / 8;
-		byte[] ke_ka = Keccak.KMACXOF256(W.modPtoBytes(), $NULL, 1024, $PK);
-		byte[] ke = Arrays.copyOfRange(ke_ka, 0, byteLen/2);
-		byte[] ka = Arrays.copyOfRange(ke_ka, byteLen/2, byteLen);
 		
-		byte[] m_pre = Keccak.KMACXOF256(ke, $NULL, c.length * 8, $PKE);
-		byte[] m = util.xorBytes(m_pre, c);
-		byte[] t_p = Keccak.KMACXOF256(ka, m, 512, $PKA);
+		byte[] m;
+		try {m = Operations.decryptElliptic(gram, pw);}
+		catch (IllegalArgumentException e) {System.out.println(FILE_NOT_ENCRYPTED); return;}
 		
-		if (Arrays.equals(t_p, t)) {
+		if (m != null) {
 			String saveAsFile = getUserFileName("decrypted", "save");
 			util.writeByteData(saveAsFile, m);
 		}
@@ -281,23 +171,7 @@ public class Main {
 		byte[] m = signFile;
 		byte[] pw = passPhrase.getBytes();
 		
-		BigInteger pre_s = util.bytesToBigInt(Keccak.KMACXOF256(pw, $NULL, 512, $SK));
-		BigInteger s = (pre_s.multiply(BigInteger.valueOf(4))).mod(Point.r);
-		
-		BigInteger pre_k = util.bytesToBigInt(Keccak.KMACXOF256(s.toByteArray(), m, 512, $N));
-		BigInteger k = (pre_k.multiply(BigInteger.valueOf(4))).mod(Point.r);
-		
-		Point U = util.pointMultiplyByScalar(Point.G, k);
-		
-		BigInteger h = util.bytesToBigInt(Keccak.KMACXOF256(U.modPtoBytes(), m, 512, $T));
-		
-		BigInteger pre_z = k.subtract(h.multiply(s));
-		BigInteger z = pre_z.mod(Point.r);
-		
-		byte[] z_bytes = z.toByteArray();
-		byte[] h_bytes = h.toByteArray();
-
-		byte[] signature = util.concatBytes(z_bytes, h_bytes);
+		byte[] signature = Operations.sign(m, pw);
 		util.writeByteData(saveAsFile, signature);
 	}
 
@@ -313,23 +187,7 @@ public class Main {
 		byte[] m = input.getBytes();
 		byte[] pw = passPhrase.getBytes();
 		
-		BigInteger pre_s = util.bytesToBigInt(Keccak.KMACXOF256(pw, $NULL, 512, $SK));
-		BigInteger s = (pre_s.multiply(BigInteger.valueOf(4))).mod(Point.r);
-		
-		BigInteger pre_k = util.bytesToBigInt(Keccak.KMACXOF256(s.toByteArray(), m, 512, $N));
-		BigInteger k = (pre_k.multiply(BigInteger.valueOf(4))).mod(Point.r);
-		
-		Point U = util.pointMultiplyByScalar(Point.G, k);
-		
-		BigInteger h = util.bytesToBigInt(Keccak.KMACXOF256(U.modPtoBytes(), m, 512, $T));
-		
-		BigInteger pre_z = k.subtract(h.multiply(s));
-		BigInteger z = pre_z.mod(Point.r);
-		
-		byte[] z_bytes = z.toByteArray();
-		byte[] h_bytes = h.toByteArray();
-
-		byte[] signature = util.concatBytes(z_bytes, h_bytes);
+		byte[] signature = Operations.sign(m, pw);
 		util.writeByteData(saveAsFile, signature);
 	}	
 	
@@ -340,36 +198,65 @@ public class Main {
 		byte[] sigKeyFile = loadFile("signature", "use");
 		byte[] vKeyFile = loadFile("public Key file", "use");
 
-		byte[] m = verifyFile;
-		byte[] sign = sigKeyFile;
-		Point V = util.pointDataUnzip(vKeyFile);
-		if (V == null) {
-			System.out.println(NAUGHTY);
-			return;
-		}
-
-		final int zLen = 56;
-
-		byte[] z_bytes = Arrays.copyOfRange(sign, 0, zLen);
-		byte[] h_bytes = Arrays.copyOfRange(sign, zLen, sign.length);
-
-		BigInteger z = new BigInteger(z_bytes);
-		BigInteger h = new BigInteger(h_bytes);
+		boolean good;
+		try {good = Operations.verify(verifyFile, sigKeyFile, vKeyFile);}
+		catch (IllegalArgumentException e) {System.out.println(NAUGHTY); return;}
 
-		Point G_z = util.pointMultiplyByScalar(Point.G, z);
-		Point V_h = util.pointMultiplyByScalar(V, h);
-
-		Point U = G_z.sum(V_h);
-
-		BigInteger h_p = util.bytesToBigInt(Keccak.KMACXOF256(U.modPtoBytes(), m, 512, $T)); // U_x mod p
-
-		if (h.equals(h_p))
+		if (good)
 			System.out.println(GOOD_SIGN);
 		else System.out.println(BAD_SIGN);
 
 	}
 
 	
+	// Compute a ParallelHash256 of a file, with the leaf blocks hashed on every core.
+	private static void opt14_ParallelFileHash() {
+		System.out.println(FILE_NOTES);
+		String path = loadFilePath("hash");
+		byte[] out;
+		try {out = ParallelHash.fileParallelHash256(path, ParallelHash.DEFAULT_BLOCK_SIZE, 512, $D);}
+		catch (Exception e) {System.out.println(FILE_NOT_FOUND); return;}
+		
+		printOutput(out);
+	}
+
+	
+	// Generate a key pair for every passphrase in a file, all public keys normalized together.
+	private static void opt15_BulkGenerateEllipticKeys() {
+		System.out.println(FILE_NOTES);
+		String path = loadFilePath("passphrase list (one per line)", "use");
+		String prefix = getUserFileName("key set (files are named <name>-<line>.pub)", "save");
+		boolean extra = getYesNoInput(OPT15_EXTRA);
+		
+		int n;
+		try {n = BulkKeygen.generateFromFile(path, prefix, extra, ForkJoinPool.commonPool());}
+		catch (IOException e) {System.out.println(FILE_NOT_FOUND); return;}
+		
+		System.out.println(n + BULK_DONE);
+	}
+	
+	// Encrypt every file of a directory tree, under a passphrase or an elliptic public key, into another directory.
+	private static void opt16_EncryptTree() {
+		System.out.println(FILE_NOTES);
+		String source = getUserFileName("directory", "encrypt");
+		String target = getUserFileName("output directory", "save into");
+		boolean elliptic = getYesNoInput(OPT16_EXTRA);
+		
+		TreeEncrypt.Summary sum;
+		try {
+			int workers = Runtime.getRuntime().availableProcessors();
+			if (elliptic)
+				sum = TreeEncrypt.encryptElliptic(Paths.get(source), Paths.get(target), loadFile("key", "use"), workers);
+			else sum = TreeEncrypt.encrypt(Paths.get(source), Paths.get(target), getConsoleString(PASSPHRASE).getBytes(), workers);
+		}
+		catch (IOException e) {System.out.println(FILE_NOT_FOUND); return;}
+		catch (IllegalArgumentException e) {System.out.println(NAUGHTY); return;}
+		
+		for (String e : sum.errors)
+			System.out.println(INLET + e);
+		System.out.println(sum);
+	}
+	
 	private static String getUserFileName(final String... prompts) {
 		int i = 0; String fullPrompt = "";
 		if (prompts.length > 1) 
@@ -401,11 +288,28 @@ public class Main {
 		return bytes;
 	}
 	
-	private static byte[][] loadCryptogram(final String... prompts) {
-		byte[][] grams = null;
-		while(grams == null)
-			grams = util.ellipticCryptogramOpener(loadFile(prompts));
-		return grams;
+	// Like loadFile, but only checks the file is there so it can be streamed rather than read into memory
+	private static String loadFilePath(final String... prompts) {
+		String path = null;
+		while (path == null) {
+			path = getUserFileName(prompts);
+			if (!Files.isRegularFile(Paths.get(path))) {
+				System.out.println(FILE_NOT_FOUND);
+				path = null;
+			}
+		}
+		return path;
+	}
+	
+	// Like loadFile, but asks again until the file is long enough to be an elliptic cryptogram
+	private static byte[] loadCryptogram(final String... prompts) {
+		byte[] gram = null;
+		while(gram == null) {
+			gram = loadFile(prompts);
+			if (util.ellipticCryptogramOpener(gram) == null)
+				gram = null;
+		}
+		return gram;
 	}
 	
 	private static String getConsoleString(String str) {
@@ -459,7 +363,7 @@ public class Main {
 			System.out.print("\n"+OPT_SELCT);
 			String input = scan_man.nextLine();
 			System.out.println();
-	        final String REGEX = "^([0-9]|1[0-3])$";
+	        final String REGEX = "^([0-9]|1[0-6])$";
 	        if (input.matches(REGEX))
 	        	currOpp = (int) Integer.parseInt(input);
 	        else {
@@ -485,6 +389,9 @@ public class Main {
 		else if (currOpp == 11) {currOpp = -1; opt11_SignFile();}
 		else if (currOpp == 12) {currOpp = -1; opt12_SignConsole();}
 		else if (currOpp == 13) {currOpp = -1; opt13_VerifyFile();}
+		else if (currOpp == 14) {currOpp = -1; opt14_ParallelFileHash();}
+		else if (currOpp == 15) {currOpp = -1; opt15_BulkGenerateEllipticKeys();}
+		else if (currOpp == 16) {currOpp = -1; opt16_EncryptTree();}
 		else throw new Error("INVALID OPTION NUMBER");
 	}
 	private static void printOptions() {
@@ -504,6 +411,10 @@ public class Main {
 		System.out.println(OPT11);
 		System.out.println(OPT12);
 		System.out.println(OPT13);
+		System.out.println(P3);
+		System.out.println(OPT14);
+		System.out.println(OPT15);
+		System.out.println(OPT16);
 		
 	}
 	
@@ -515,6 +426,10 @@ public class Main {
 	}
 	
 	public static void main(String[] args) {
+		if (args.length > 0) { // headless, see Cli
+			System.exit(Cli.run(args));
+		}
+		
 		scan_man = new Scanner(System.in);
 		running = true;
 		currOpp = -1;
@@ -573,6 +488,10 @@ public class Main {
 		OPT11 = "OPTION 11: Sign a given file from a given password",
 		OPT12 = "OPTION 12: Sign your console input text from a given password",
 		OPT13 = "OPTION 13: Verify a given data file and its signature file",
+		P3    = "\n- - - - E X T R A   O P T I O N S - - - -",
+		OPT14 = "OPTION 14: Compute a ParallelHash256 of a large file on all cores",
+		OPT15 = "OPTION 15: Generate elliptic key pairs in bulk from a file of passphrases",
+		OPT16 = "OPTION 16: Encrypt every file of a directory tree into another directory",
 		
 //		FILE_EXP = "* all files are located in the \"files\" sub directory \n",
 //		FILE_S	= "Please enter the name (including the extension) of the file you wish to ",
@@ -587,6 +506,9 @@ public class Main {
 		FILE_P2 = "file you wish to ", // load / save / encrypt / decrypt / sign
 				
 		OPT7_EXTRA = "Would you like to Encrypt the private key and write it to a different file?",
+		OPT15_EXTRA = "Would you like to also write every private key, encrypted, next to its public key (<name>-<line>.priv)?",
+		BULK_DONE = " key pairs written.",
+		OPT16_EXTRA = "Would you like to encrypt under an elliptic public key file instead of a passphrase?",
 		YES_NO = "Please enter [Y] Yes or [N] No : ",
 		CONSOLE_GET = "Below, enter the string you wish to ", // add Hash / MAC in method
 		PASSPHRASE = "Please enter your passphrase: ",
@@ -598,6 +520,7 @@ public class Main {
 		INVALID_INPUT 		= INLET + "That is not a valid input!",
 		INVALID_FILE_NAME 	= INLET + "That is not a valid file name!",
 		FILE_NOT_FOUND 		= INLET + "That file could not be located or does not exist!",
+		IO_FAILED 			= INLET + "I/O error:",
 		FILE_NOT_ENCRYPTED 	= INLET + "That file is not encrypted or is otherwise incompatible!",
 		NAUGHTY = "type type type type type ... computer says no.";
 		
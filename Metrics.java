@@ -0,0 +1,233 @@
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ *
+ * Runtime counters and latency histograms
+ *
+ * Off unless the JVM runs with -Dmetrics=true. ENABLED is static final, so when it is
+ * false the JIT folds every "if (Metrics.ENABLED)" at the call sites away and nothing is
+ * counted, timed or registered.
+ *
+ * When on:
+ *   counters      Keccak-f permutations, bytes absorbed and squeezed (Keccak, and the
+ *                 vector path of KeccakMulti counting each state it permutes), scalar
+ *                 multiplications (FixedBase, WNAF, ExtendedPoint) and affine point
+ *                 additions (Point.sum), all LongAdders
+ *   histograms    latency of each completed high-level operation (Operations): hash, MAC,
+ *                 symmetric and elliptic encrypt / decrypt, sign, verify
+ *
+ * Everything is published as MXBeans under the "kmacmart" domain of the platform MBean
+ * server (jconsole, jcmd, any JMX client), and -Dmetrics.dump=seconds also prints dump()
+ * to stderr at that period.
+ *
+ * @authors Lindsay Ding, Alan Thompson, Christopher Henderson
+ *
+ */
+public final class Metrics {
+
+	/** -Dmetrics=true turns counting on; fixed for the life of the JVM */
+	public static final boolean ENABLED = Boolean.getBoolean("metrics");
+
+	static final LongAdder
+		PERMUTATIONS = new LongAdder(),
+		BYTES_ABSORBED = new LongAdder(),
+		BYTES_SQUEEZED = new LongAdder(),
+		SCALAR_MULTIPLICATIONS = new LongAdder(),
+		POINT_ADDITIONS = new LongAdder();
+
+	static final Histogram
+		HASH = new Histogram("hash"),
+		MAC = new Histogram("mac"),
+		ENCRYPT = new Histogram("encrypt"),
+		DECRYPT = new Histogram("decrypt"),
+		EC_ENCRYPT = new Histogram("ec-encrypt"),
+		EC_DECRYPT = new Histogram("ec-decrypt"),
+		SIGN = new Histogram("sign"),
+		VERIFY = new Histogram("verify");
+
+	private static final Histogram[] OPERATIONS = {HASH, MAC, ENCRYPT, DECRYPT, EC_ENCRYPT, EC_DECRYPT, SIGN, VERIFY};
+
+	static {
+		if (ENABLED) {
+			register();
+			long period = Long.getLong("metrics.dump", 0);
+			if (period > 0) {
+				ScheduledExecutorService dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+					Thread t = new Thread(r, "metrics-dump");
+					t.setDaemon(true);
+					return t;
+				});
+				dumper.scheduleAtFixedRate(() -> dump(System.err), period, period, TimeUnit.SECONDS);
+			}
+		}
+	}
+
+	/**
+	 * @return the start of a timed operation, for Histogram.record
+	 */
+	static long start() {
+		return ENABLED ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Prints every counter and every operation that ran at least once.
+	 */
+	public static void dump(PrintStream out) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("permutations %d, absorbed %d B, squeezed %d B, scalar multiplications %d, point additions %d%n",
+				PERMUTATIONS.sum(), BYTES_ABSORBED.sum(), BYTES_SQUEEZED.sum(), SCALAR_MULTIPLICATIONS.sum(), POINT_ADDITIONS.sum()));
+		for (Histogram h : OPERATIONS)
+			if (h.getCount() > 0)
+				sb.append(String.format("%-10s n=%d mean=%.1fus p50=%.1fus p99=%.1fus max=%.1fus%n",
+						h.name, h.getCount(), h.getMeanMicros(), h.getP50Micros(), h.getP99Micros(), h.getMaxMicros()));
+		out.print(sb);
+	}
+
+	/**
+	 * Zeroes every counter and histogram.
+	 */
+	public static void reset() {
+		PERMUTATIONS.reset();
+		BYTES_ABSORBED.reset();
+		BYTES_SQUEEZED.reset();
+		SCALAR_MULTIPLICATIONS.reset();
+		POINT_ADDITIONS.reset();
+		for (Histogram h : OPERATIONS)
+			h.reset();
+	}
+
+	private static void register() {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			server.registerMBean(new Counters(), new ObjectName("kmacmart:type=Counters"));
+			for (Histogram h : OPERATIONS)
+				server.registerMBean(h, new ObjectName("kmacmart:type=Operation,name=" + h.name));
+		} catch (JMException e) {
+			System.err.println("metrics not published over JMX: " + e);
+		}
+	}
+
+	/**
+	 * The counters, as JMX sees them
+	 */
+	public interface CountersMXBean {
+		long getPermutations();
+		long getBytesAbsorbed();
+		long getBytesSqueezed();
+		long getScalarMultiplications();
+		long getPointAdditions();
+		void reset();
+	}
+
+	private static final class Counters implements CountersMXBean {
+		public long getPermutations() {return PERMUTATIONS.sum();}
+		public long getBytesAbsorbed() {return BYTES_ABSORBED.sum();}
+		public long getBytesSqueezed() {return BYTES_SQUEEZED.sum();}
+		public long getScalarMultiplications() {return SCALAR_MULTIPLICATIONS.sum();}
+		public long getPointAdditions() {return POINT_ADDITIONS.sum();}
+		public void reset() {Metrics.reset();}
+	}
+
+	/**
+	 * One operation's latencies, as JMX sees them
+	 */
+	public interface OperationMXBean {
+		String getName();
+		long getCount();
+		double getMeanMicros();
+		double getP50Micros();
+		double getP90Micros();
+		double getP99Micros();
+		double getMaxMicros();
+		void reset();
+	}
+
+	/**
+	 * Latency histogram with four buckets per power of two of nanoseconds, so a
+	 * percentile is within 25% of the true value; recording is lock free.
+	 */
+	static final class Histogram implements OperationMXBean {
+		private static final int BUCKETS = 252;
+
+		final String name;
+		private final LongAdder[] buckets = new LongAdder[BUCKETS];
+		private final LongAdder count = new LongAdder(), total = new LongAdder();
+		private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+		Histogram(String name) {
+			this.name = name;
+			for (int i = 0; i < BUCKETS; i++)
+				buckets[i] = new LongAdder();
+		}
+
+		/**
+		 * Records the time since start, a value from Metrics.start().
+		 */
+		void record(long start) {
+			if (ENABLED) {
+				long nanos = Math.max(0, System.nanoTime() - start);
+				buckets[bucket(nanos)].increment();
+				count.increment();
+				total.add(nanos);
+				max.accumulate(nanos);
+			}
+		}
+
+		// 0..3 exactly, then 4 buckets per octave
+		static int bucket(long nanos) {
+			if (nanos < 4)
+				return (int) nanos;
+			int msb = 63 - Long.numberOfLeadingZeros(nanos);
+			return 4 * (msb - 1) + (int) ((nanos >>> (msb - 2)) & 3);
+		}
+
+		// the largest value that falls in bucket i
+		static long upperBound(int i) {
+			if (i < 4)
+				return i;
+			int msb = i / 4 + 1;
+			return ((4L + i % 4 + 1) << (msb - 2)) - 1;
+		}
+
+		double percentileMicros(double q) {
+			long n = count.sum();
+			if (n == 0)
+				return 0;
+			long rank = (long) Math.ceil(q * n), seen = 0;
+			for (int i = 0; i < BUCKETS; i++) {
+				seen += buckets[i].sum();
+				if (seen >= rank)
+					return Math.min(upperBound(i), max.get()) / 1e3;
+			}
+			return max.get() / 1e3;
+		}
+
+		public String getName() {return name;}
+		public long getCount() {return count.sum();}
+		public double getMeanMicros() {long n = count.sum(); return n == 0 ? 0 : total.sum() / 1e3 / n;}
+		public double getP50Micros() {return percentileMicros(0.50);}
+		public double getP90Micros() {return percentileMicros(0.90);}
+		public double getP99Micros() {return percentileMicros(0.99);}
+		public double getMaxMicros() {return max.get() / 1e3;}
+
+		public void reset() {
+			for (LongAdder b : buckets)
+				b.reset();
+			count.reset();
+			total.reset();
+			max.reset();
+		}
+	}
+
+	private Metrics() {}
+}
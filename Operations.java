@@ -0,0 +1,223 @@
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+/**
+ *
+ * The operations behind menu options 1 - 13, without any console interaction
+ *
+ * Inputs are bytes, paths and passphrases; failures come back as exceptions or a false /
+ * null result instead of printed messages, so the menu (Main) and the headless command
+ * line (Cli) share one implementation. Formats are unchanged. Each completed operation's
+ * latency goes to its Metrics histogram when metrics are on.
+ *
+ * @authors Lindsay Ding, Alan Thompson, Christopher Henderson
+ *
+ */
+public class Operations {
+
+	private static final int byteLen = 512 / 8;
+
+	// option 1: plain hash of a file, KMACXOF256("", m, 512, "D")
+	public static byte[] hashFile(String path) throws IOException {
+		long t0 = Metrics.start();
+		byte[] out = fileKMACXOF256(Main.$NULL, path, Main.$D);
+		Metrics.HASH.record(t0);
+		return out;
+	}
+
+	// option 2
+	public static byte[] hash(byte[] m) {
+		long t0 = Metrics.start();
+		byte[] out = Keccak.KMACXOF256_cached(Main.$NULL, m, 512, Main.$D);
+		Metrics.HASH.record(t0);
+		return out;
+	}
+
+	// option 3: MAC of a file under a passphrase, KMACXOF256(pw, m, 512, "T")
+	public static byte[] macFile(String path, byte[] pw) throws IOException {
+		long t0 = Metrics.start();
+		byte[] out = fileKMACXOF256(pw, path, Main.$T);
+		Metrics.MAC.record(t0);
+		return out;
+	}
+
+	// option 4
+	public static byte[] mac(byte[] m, byte[] pw) {
+		long t0 = Metrics.start();
+		byte[] out = Keccak.KMACXOF256_cached(pw, m, 512, Main.$T);
+		Metrics.MAC.record(t0);
+		return out;
+	}
+
+	// option 5
+	public static void encryptFile(String inPath, String outPath, byte[] pw) throws IOException {
+		long t0 = Metrics.start();
+		util.symmetricEncryptFile(inPath, outPath, pw);
+		Metrics.ENCRYPT.record(t0);
+	}
+
+	/**
+	 * Option 5 on a message in memory, same cryptogram z || t || c as the file version
+	 */
+	public static byte[] encrypt(byte[] m, byte[] pw) {
+		long t0 = Metrics.start();
+		byte[] gram = util.symmetricEncrypt(m, pw);
+		Metrics.ENCRYPT.record(t0);
+		return gram;
+	}
+
+	/**
+	 * Option 6 on a cryptogram in memory
+	 * @return the plaintext, or null if the tag does not match (wrong passphrase)
+	 * @throws IllegalArgumentException if gram is too short to be a cryptogram
+	 */
+	public static byte[] decrypt(byte[] gram, byte[] pw) {
+		long t0 = Metrics.start();
+		byte[] m = util.symmetricDecrypt(gram, pw);
+		Metrics.DECRYPT.record(t0);
+		return m;
+	}
+
+	/**
+	 * Option 6
+	 * @return false if the tag does not match (wrong passphrase), nothing is written then
+	 * @throws IOException if the input cannot be read or is not a cryptogram
+	 */
+	public static boolean decryptFile(String inPath, String outPath, byte[] pw) throws IOException {
+		long t0 = Metrics.start();
+		boolean match = util.symmetricDecryptFile(inPath, outPath, pw);
+		Metrics.DECRYPT.record(t0);
+		return match;
+	}
+
+	/**
+	 * Option 7: the key pair of a passphrase, public key written to publicKeyFile
+	 * @param privateKeyFile where the private key is written encrypted under pw, or null
+	 * @return the public key
+	 */
+	public static Point generateKey(byte[] pw, String publicKeyFile, String privateKeyFile) throws IOException {
+		Keyring.Key key = Keyring.get(pw);
+		BigInteger s = key.s();
+		Point V = key.publicKey().point();
+		Files.write(Paths.get(publicKeyFile), util.pointDataZip(V));
+		if (privateKeyFile != null)
+			Files.write(Paths.get(privateKeyFile), util.encryptPrivateKey(s, pw));
+		return V;
+	}
+
+	/**
+	 * Options 8 and 9: encrypt m under a public key
+	 * @param keyData the public key file contents
+	 * @return the cryptogram Z || t || c
+	 * @throws IllegalArgumentException if keyData is not a public key
+	 */
+	public static byte[] encryptElliptic(byte[] m, byte[] keyData) {
+		PublicKeyCache.Entry V = PublicKeyCache.get(keyData);
+		if (V == null)
+			throw new IllegalArgumentException(Main.NAUGHTY);
+		long t0 = Metrics.start();
+
+		byte[] pre_k = new byte[byteLen];
+		new SecureRandom().nextBytes(pre_k);
+		BigInteger k = (util.bytesToBigInt(pre_k).multiply(BigInteger.valueOf(4))).mod(Point.r); // (4 * k) mod r
+
+		Point W = V.multiply(k);
+		Point Z = util.pointMultiplyByScalar(Point.G, k);
+
+		byte[] ke_ka = Keccak.KMACXOF256(W.modPtoBytes(), Main.$NULL, 1024, Main.$PK); // W_x mod p
+		byte[] ke = Arrays.copyOfRange(ke_ka, 0, byteLen/2);
+		byte[] ka = Arrays.copyOfRange(ke_ka, byteLen/2, byteLen);
+
+		byte[] c_pre = Keccak.KMACXOF256(ke, Main.$NULL, m.length * 8, Main.$PKE);
+		byte[] c = util.xorBytes(c_pre, m);
+
+		byte[] t = Keccak.KMACXOF256(ka, m, 512, Main.$PKA);
+
+		byte[] gram = util.concatBytes(util.pointDataZip(Z), t, c);
+		Metrics.EC_ENCRYPT.record(t0);
+		return gram;
+	}
+
+	/**
+	 * Option 10: decrypt an elliptic cryptogram with the passphrase of the key pair
+	 * @return the plaintext, or null if the tag does not match (wrong passphrase)
+	 * @throws IllegalArgumentException if gram is not an elliptic cryptogram
+	 */
+	public static byte[] decryptElliptic(byte[] gram, byte[] pw) {
+		long t0 = Metrics.start();
+		int zLen = util.cryptogramPointLength(gram);
+		if (zLen + 64 > gram.length)
+			throw new IllegalArgumentException(Main.FILE_NOT_ENCRYPTED);
+		Point Z = util.pointDataUnzip(Arrays.copyOfRange(gram, 0, zLen));
+		if (Z == null)
+			throw new IllegalArgumentException(Main.FILE_NOT_ENCRYPTED);
+		byte[] t = Arrays.copyOfRange(gram, zLen, zLen + 64);
+		byte[] c = Arrays.copyOfRange(gram, zLen + 64, gram.length);
+
+		BigInteger s = Keyring.get(pw).s();
+		Point W = util.pointMultiplyByScalar(Z, s);
+
+		byte[] ke_ka = Keccak.KMACXOF256(W.modPtoBytes(), Main.$NULL, 1024, Main.$PK);
+		byte[] ke = Arrays.copyOfRange(ke_ka, 0, byteLen/2);
+		byte[] ka = Arrays.copyOfRange(ke_ka, byteLen/2, byteLen);
+
+		byte[] m_pre = Keccak.KMACXOF256(ke, Main.$NULL, c.length * 8, Main.$PKE);
+		byte[] m = util.xorBytes(m_pre, c);
+		byte[] t_p = Keccak.KMACXOF256(ka, m, 512, Main.$PKA);
+
+		Metrics.EC_DECRYPT.record(t0);
+		return Arrays.equals(t_p, t) ? m : null;
+	}
+
+	/**
+	 * Options 11 and 12: sign m with the private key of a passphrase
+	 * @return the signature z || h
+	 */
+	public static byte[] sign(byte[] m, byte[] pw) {
+		long t0 = Metrics.start();
+		BigInteger s = Keyring.get(pw).s();
+
+		BigInteger pre_k = util.bytesToBigInt(Keccak.KMACXOF256(s.toByteArray(), m, 512, Main.$N));
+		BigInteger k = (pre_k.multiply(BigInteger.valueOf(4))).mod(Point.r);
+
+		Point U = util.pointMultiplyByScalar(Point.G, k);
+
+		BigInteger h = util.bytesToBigInt(Keccak.KMACXOF256(U.modPtoBytes(), m, 512, Main.$T));
+
+		BigInteger pre_z = k.subtract(h.multiply(s));
+		BigInteger z = pre_z.mod(Point.r);
+
+		byte[] sig = util.concatBytes(z.toByteArray(), h.toByteArray());
+		Metrics.SIGN.record(t0);
+		return sig;
+	}
+
+	/**
+	 * Option 13
+	 * @param keyData the public key file contents
+	 * @return true if sig is a valid signature of m under the key
+	 * @throws IllegalArgumentException if keyData is not a public key
+	 */
+	public static boolean verify(byte[] m, byte[] sig, byte[] keyData) {
+		long t0 = Metrics.start();
+		PublicKeyCache.Entry V = PublicKeyCache.get(keyData);
+		if (V == null)
+			throw new IllegalArgumentException(Main.NAUGHTY);
+		boolean good = util.verifySignature(m, sig, V);
+		Metrics.VERIFY.record(t0);
+		return good;
+	}
+
+	// util.fileKMACXOF256, 512 bits, with the read failure thrown instead of printed
+	private static byte[] fileKMACXOF256(byte[] K, String path, byte[] S) throws IOException {
+		Keccak.sha3_ctx_t c = Keccak.KMACXOF256_init_cached(K, S);
+		util.absorbFile(c, path);
+		byte[] out = new byte[byteLen];
+		Keccak.sponge_squeeze(c, out, 0, out.length);
+		return out;
+	}
+}
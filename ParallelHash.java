@@ -0,0 +1,174 @@
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 
+ * ParallelHash256 and ParallelHashXOF256 as specified in NIST SP 800-185, section 6
+ * 
+ * The message is cut into blocks of B bytes, every block is hashed on its own with
+ * SHAKE256 on a ForkJoinPool, and the leaf digests are chained and hashed again with
+ * cSHAKE256 under the function name "ParallelHash".
+ * Input is worked through a window at a time so memory stays bounded for any input size.
+ * 
+ * @authors Lindsay Ding, Alan Thompson, Christopher Henderson
+ *
+ */
+public class ParallelHash {
+
+	/** Block size B used by the file hash menu option, in bytes */
+	public static final int DEFAULT_BLOCK_SIZE = 1 << 13;
+
+	/** Input is hashed at most this many bytes at a time (rounded down to whole blocks) */
+	static final int WINDOW = 1 << 28;
+
+	/** ... and at most this many blocks at a time, which bounds the leaf digest buffer to 4 MiB */
+	static final int WINDOW_BLOCKS = 1 << 16;
+
+	/** Leaf tasks stop splitting once they cover this many bytes */
+	static final int SPLIT_THRESHOLD = 1 << 20;
+
+	private static final int LEAF_BYTES = 512 / 8;
+
+	public static byte[] ParallelHash256(byte[] X, int B, int L, byte[] S) {
+		return ParallelHash256(X, B, L, S, false, ForkJoinPool.commonPool());
+	}
+
+	public static byte[] ParallelHashXOF256(byte[] X, int B, int L, byte[] S) {
+		return ParallelHash256(X, B, L, S, true, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * ParallelHash256 of a byte array.
+	 * @param X the message
+	 * @param B the block size in bytes
+	 * @param L output length in bits
+	 * @param S the customization string
+	 * @param xof true for ParallelHashXOF256, where L is not bound into the output
+	 * @param pool the pool the leaf blocks are hashed on
+	 * @return the L bit output
+	 */
+	public static byte[] ParallelHash256(byte[] X, int B, int L, byte[] S, boolean xof, ForkJoinPool pool) {
+		checkBlockSize(B);
+		Keccak.sha3_ctx_t c = start(B, S);
+		int window = windowSize(B);
+		byte[] digests = new byte[digestBufferSize(X.length, B, window)];
+		long n = 0;
+		for (int pos = 0; pos < X.length; pos += window) {
+			n += absorbWindow(c, ByteBuffer.wrap(X, pos, Math.min(window, X.length - pos)).slice(), B, digests, pool);
+		}
+		return finish(c, n, L, xof);
+	}
+
+	/**
+	 * ParallelHash256 of the contents of a file, mapped through a FileChannel a window at a time.
+	 * @param path the file holding the message
+	 * @param B the block size in bytes
+	 * @param L output length in bits
+	 * @param S the customization string
+	 * @param xof true for ParallelHashXOF256, where L is not bound into the output
+	 * @param pool the pool the leaf blocks are hashed on
+	 * @return the L bit output
+	 * @throws IOException if the file cannot be opened or read
+	 */
+	public static byte[] fileParallelHash256(String path, int B, int L, byte[] S, boolean xof, ForkJoinPool pool) throws IOException {
+		checkBlockSize(B);
+		Keccak.sha3_ctx_t c = start(B, S);
+		int window = windowSize(B);
+		long n = 0;
+		try (FileChannel ch = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+			long size = ch.size();
+			byte[] digests = new byte[digestBufferSize(size, B, window)];
+			for (long pos = 0; pos < size; pos += window) {
+				n += absorbWindow(c, ch.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(window, size - pos)), B, digests, pool);
+			}
+		}
+		return finish(c, n, L, xof);
+	}
+
+	public static byte[] fileParallelHash256(String path, int B, int L, byte[] S) throws IOException {
+		return fileParallelHash256(path, B, L, S, false, ForkJoinPool.commonPool());
+	}
+
+	private static void checkBlockSize(int B) {
+		if (B <= 0)
+			throw new IllegalArgumentException("block size " + B);
+	}
+
+	// whole blocks only, so no block straddles two windows
+	private static int windowSize(int B) {
+		return Math.max(1, Math.min(WINDOW / B, WINDOW_BLOCKS)) * B;
+	}
+
+	// enough for the leaf digests of one window, or of the whole message if that is smaller
+	private static int digestBufferSize(long size, int B, int window) {
+		return (int) ((Math.min(size, window) + B - 1) / B) * LEAF_BYTES;
+	}
+
+	private static Keccak.sha3_ctx_t start(int B, byte[] S) {
+		Keccak.sha3_ctx_t c = Keccak.cSHAKE256_init("ParallelHash", S);
+		byte[] encB = Keccak.left_encode(BigInteger.valueOf(B));
+		Keccak.sponge_update(c, encB, 0, encB.length);
+		return c;
+	}
+
+	// hashes the blocks of one window on the pool, then absorbs their digests in order
+	private static long absorbWindow(Keccak.sha3_ctx_t c, ByteBuffer window, int B, byte[] digests, ForkJoinPool pool) {
+		int blocks = (int) (((long) window.remaining() + B - 1) / B);
+		pool.invoke(new leaf_task(window, B, 0, blocks, digests));
+		Keccak.sponge_update(c, digests, 0, blocks * LEAF_BYTES);
+		return blocks;
+	}
+
+	private static byte[] finish(Keccak.sha3_ctx_t c, long n, int L, boolean xof) {
+		byte[] encN = Keccak.right_encode(BigInteger.valueOf(n));
+		byte[] encL = Keccak.right_encode(BigInteger.valueOf(xof ? 0 : L));
+		Keccak.sponge_update(c, encN, 0, encN.length);
+		Keccak.sponge_update(c, encL, 0, encL.length);
+		byte[] out = new byte[L / 8];
+		Keccak.sponge_squeeze(c, out, 0, out.length);
+		return out;
+	}
+
+	/**
+	 * Computes SHAKE256(block i, 512) into digests[64 i .. 64 i + 64) for blocks lo <= i < hi of the window,
+	 * splitting the range in half until a task covers about SPLIT_THRESHOLD bytes.
+	 */
+	@SuppressWarnings("serial")
+	private static final class leaf_task extends RecursiveAction {
+		final ByteBuffer window;
+		final int B, lo, hi;
+		final byte[] digests;
+
+		leaf_task(ByteBuffer window, int B, int lo, int hi, byte[] digests) {
+			this.window = window;
+			this.B = B;
+			this.lo = lo;
+			this.hi = hi;
+			this.digests = digests;
+		}
+
+		@Override
+		protected void compute() {
+			if (hi - lo > 1 && (long) (hi - lo) * B > SPLIT_THRESHOLD) {
+				int mid = (lo + hi) >>> 1;
+				invokeAll(new leaf_task(window, B, lo, mid, digests), new leaf_task(window, B, mid, hi, digests));
+				return;
+			}
+
+			int size = window.limit();
+			for (int i = lo; i < hi; i++) {
+				int start = i * B, end = (int) Math.min((long) start + B, size);
+				Keccak.sha3_ctx_t leaf = Keccak.SHAKE256_init();
+				Keccak.sponge_update(leaf, window.slice(start, end - start)); // read in place, heap or mapped
+				Keccak.sponge_squeeze(leaf, digests, i * LEAF_BYTES, LEAF_BYTES);
+			}
+		}
+	}
+
+}
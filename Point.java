@@ -19,6 +19,9 @@ public class Point {
 		subtract(new BigInteger("13818066809895115352007386748515426880336692474882178609894547503885"));
 
 	public static final BigInteger d = BigInteger.valueOf(-39081);
+
+	/** -d, the small constant FieldElement.mulSmall multiplies by in place of d */
+	static final long D_NEG = 39081;
     
 	public static final Point G = new Point(BigInteger.valueOf(8), Point.p, false);
 	
@@ -54,10 +57,36 @@ public class Point {
      */
     public Point(BigInteger x, BigInteger p, boolean lsb) {
         this.x = x;
-        BigInteger numerator = BigInteger.ONE.subtract(x.pow(2));
-        BigInteger denominator = BigInteger.ONE.subtract(d.multiply(x.pow(2))); // 1 + 39801 * x^2, d = -39801
-        BigInteger v = numerator.multiply(denominator.modInverse(p)).mod(p);
-        this.y = sqrt(v, p, lsb);
+        if (!p.equals(Point.p)) {
+            BigInteger numerator = BigInteger.ONE.subtract(x.pow(2));
+            BigInteger denominator = BigInteger.ONE.subtract(d.multiply(x.pow(2)));
+            BigInteger v = numerator.multiply(denominator.modInverse(p)).mod(p);
+            this.y = sqrt(v, p, lsb);
+            return;
+        }
+        FieldElement y = new FieldElement();
+        this.y = decompress(y, new FieldElement(x), lsb) ? y.toBigInteger() : null;
+    }
+
+    /**
+     * y of the point with the given x: y^2 = (1 - x^2) / (1 - d x^2), computed as one
+     * square root of a ratio, so no separate inversion (FieldElement.sqrtRatio).
+     * @param y receives y
+     * @param x the x coordinate
+     * @param lsb the least significant bit of y
+     * @return false if no point has this x
+     */
+    static boolean decompress(FieldElement y, FieldElement x, boolean lsb) {
+        FieldElement one = new FieldElement().setOne();
+        FieldElement x2 = new FieldElement().sqr(x);
+        FieldElement numerator = new FieldElement().sub(one, x2);
+        FieldElement denominator = new FieldElement().mulSmall(x2, D_NEG);
+        denominator.add(denominator, one); // 1 + 39081 * x^2, d = -39081
+        if (!y.sqrtRatio(numerator, denominator))
+            return false;
+        if (y.isOdd() != lsb)
+            y.neg(y); // correct the lsb
+        return true;
     }
 
     /**
@@ -139,6 +168,10 @@ public class Point {
         if (v.signum() == 0) {
             return BigInteger.ZERO;
         }
+        if (p.equals(Point.p)) {
+            FieldElement r = new FieldElement();
+            return sqrt(r, new FieldElement(v), lsb) ? r.toBigInteger() : null;
+        }
         BigInteger r = v.modPow(p.shiftRight(2).add(BigInteger.ONE), p);
         if (r.testBit(0) != lsb) {
             r = p.subtract(r); // correct the lsb
@@ -146,13 +179,45 @@ public class Point {
         return (r.multiply(r).subtract(v).mod(p).signum() == 0) ? r : null;
     }
 
+    /**
+     * Field version of sqrt for the curve's own modulus p.
+     * @param r receives the root
+     * @param v the radicand.
+     * @param lsb desired least significant bit (true: 1, false: 0).
+     * @return true if v is a square, false if not (r is then garbage)
+     */
+    static boolean sqrt(FieldElement r, FieldElement v, boolean lsb) {
+        if (!r.sqrt(v))
+            return false;
+        if (r.isOdd() != lsb) {
+            r.neg(r); // correct the lsb
+        }
+        return true;
+    }
+
+    /**
+     * Check the curve equation x^2 + y^2 = 1 + d x^2 y^2 (mod p).
+     * @return true if this point is on the curve
+     */
+    public boolean isOnCurve() {
+        if (x == null || y == null) return false;
+        FieldElement x2 = new FieldElement(x), y2 = new FieldElement(y);
+        x2.sqr(x2);
+        y2.sqr(y2);
+        FieldElement left = new FieldElement().add(x2, y2);
+        FieldElement right = new FieldElement().mul(x2, y2);
+        right.mulSmall(right, D_NEG);                             // -d x^2 y^2
+        right.sub(new FieldElement().setOne(), right);            // 1 + d x^2 y^2
+        return left.equals(right);
+    }
+
     /**
      * Obtain the opposite point of the current point.
      * @return the opposite point (p - x, y).
      */
     public Point opposite() {
-        BigInteger xCoor = p.subtract(x);
-        return new Point(xCoor, this.y);
+        FieldElement xCoor = new FieldElement(x);
+        return new Point(xCoor.neg(xCoor).toBigInteger(), this.y);
     }
 
 
@@ -162,17 +227,50 @@ public class Point {
      * @return a new point on the curve which is the sum of the two points.
      */
     public Point sum(Point pt) {
+        if (Metrics.ENABLED) Metrics.POINT_ADDITIONS.increment();
+        FieldElement xCoor = new FieldElement(this.x), yCoor = new FieldElement(this.y);
+        sum(xCoor, yCoor, xCoor, yCoor, new FieldElement(pt.x), new FieldElement(pt.y), scratch());
+        return new Point(xCoor.toBigInteger(), yCoor.toBigInteger());
+    }
 
-        BigInteger factor = this.x.multiply(this.y).multiply(pt.x).multiply(pt.y);
-        BigInteger nX = (this.x.multiply(pt.y)).add(this.y.multiply(pt.x));
-        BigInteger dX = BigInteger.ONE.add(d.multiply(factor));
-        BigInteger nY = (this.y.multiply(pt.y)).subtract(this.x.multiply(pt.x));
-        BigInteger dY = BigInteger.ONE.subtract(d.multiply(factor));
-
-        BigInteger xCoor = (nX.multiply(dX.modInverse(p))).mod(p);
-        BigInteger yCoor = (nY.multiply(dY.modInverse(p))).mod(p);
+    /**
+     * @return scratch space for the field version of sum
+     */
+    static FieldElement[] scratch() {
+        FieldElement[] t = new FieldElement[6];
+        for (int i = 0; i < t.length; i++)
+            t[i] = new FieldElement();
+        return t;
+    }
 
-        return new Point(xCoor, yCoor);
+    /**
+     * Field version of sum, (x3, y3) = (x1, y1) + (x2, y2), with one inversion for both denominators:
+     * x3 = (x1 y2 + y1 x2) / (1 + d x1 x2 y1 y2), y3 = (y1 y2 - x1 x2) / (1 - d x1 x2 y1 y2)
+     * x3 and y3 may be the same objects as any of the inputs.
+     * @param t scratch space from scratch()
+     */
+    static void sum(FieldElement x3, FieldElement y3, FieldElement x1, FieldElement y1,
+                    FieldElement x2, FieldElement y2, FieldElement[] t) {
+        FieldElement a = t[0], b = t[1], c = t[2], e = t[3], f = t[4], inv = t[5];
+        a.mul(x1, x2);
+        b.mul(y1, y2);
+        e.add(x1, y1);
+        f.add(x2, y2);
+        e.mul(e, f);
+        e.sub(e, a);
+        e.sub(e, b);            // nX = x1 y2 + y1 x2
+        c.mul(a, b);
+        c.mulSmall(c, D_NEG);   // -d x1 x2 y1 y2
+        b.sub(b, a);            // nY = y1 y2 - x1 x2
+        f.setOne();
+        a.sub(f, c);            // dX = 1 + d x1 x2 y1 y2
+        c.add(c, f);            // dY = 1 - d x1 x2 y1 y2
+        f.mul(a, c);
+        inv.invert(f);          // 1 / (dX dY)
+        x3.mul(e, c);
+        x3.mul(x3, inv);
+        y3.mul(b, a);
+        y3.mul(y3, inv);
     }
 
     /**
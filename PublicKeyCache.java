@@ -0,0 +1,167 @@
+import java.math.BigInteger;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ *
+ * In-process cache of parsed public keys
+ *
+ * Keys are looked up by the fingerprint of their file bytes (SHAKE256, 256 bits), so a
+ * key seen before skips util.pointDataUnzip. Each entry also builds, on its first
+ * multiplication, a normalized table of odd multiples of the key for the w-NAF code,
+ * so every later k*V or z*G + h*V against that key skips the table construction too.
+ *
+ * Bounded, least recently used entries go first. Safe to use from any number of threads.
+ *
+ * @authors Lindsay Ding, Alan Thompson, Christopher Henderson
+ *
+ */
+public class PublicKeyCache {
+
+	/** Window width of the per-key tables: 32 odd multiples, worth it for a key used repeatedly */
+	static final int TABLE_WIDTH = 7;
+
+	/**
+	 * A parsed public key and its lazily built window table
+	 */
+	public static final class Entry {
+		final Point V;
+		final String fingerprint;
+		private volatile ExtendedPoint[] table;
+
+		Entry(Point V, String fingerprint) {
+			this.V = V;
+			this.fingerprint = fingerprint;
+		}
+
+		public Point point() {
+			return V;
+		}
+
+		public String fingerprint() {
+			return fingerprint;
+		}
+
+		/**
+		 * @return k * V
+		 */
+		public Point multiply(BigInteger k) {
+			return WNAF.multiply(table(), true, k, TABLE_WIDTH);
+		}
+
+		/**
+		 * @return a * G + b * V, with one shared chain of doublings
+		 */
+		public Point multiplyWithG(BigInteger a, BigInteger b) {
+			return WNAF.multiplyWithG(a, table(), TABLE_WIDTH, b);
+		}
+
+		// built at most once, by whichever thread gets here first
+		private ExtendedPoint[] table() {
+			ExtendedPoint[] t = table;
+			if (t == null) {
+				synchronized (this) {
+					t = table;
+					if (t == null)
+						table = t = WNAF.oddMultiples(V, TABLE_WIDTH, true);
+				}
+			}
+			return t;
+		}
+	}
+
+	private static int cacheSize = 256;
+
+	private static long hits, misses;
+
+	// access ordered, so iteration starts at the least recently used key
+	private static final LinkedHashMap<String, Entry> cache = new LinkedHashMap<>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+			return size() > cacheSize;
+		}
+	};
+
+	/**
+	 * Look up a public key by its file bytes, parsing and caching it on a miss.
+	 * @param keyData the key as written by util.pointDataZip
+	 * @return the cached entry, or null if keyData is not a key (nothing is cached then)
+	 */
+	public static Entry get(byte[] keyData) {
+		if (keyData == null)
+			return null;
+		String fp = fingerprint(keyData);
+		synchronized (cache) {
+			Entry e = cache.get(fp);
+			if (e != null) {
+				hits++;
+				return e;
+			}
+			misses++;
+		}
+		Point V = util.pointDataUnzip(keyData); // parsed outside the lock, other lookups go on meanwhile
+		if (V == null)
+			return null;
+		Entry e = new Entry(V, fp);
+		synchronized (cache) {
+			Entry raced = cache.putIfAbsent(fp, e);
+			return raced != null ? raced : e;
+		}
+	}
+
+	/**
+	 * @param keyData the key as written by util.pointDataZip
+	 * @return hex of the first 256 bits of SHAKE256(keyData)
+	 */
+	public static String fingerprint(byte[] keyData) {
+		Keccak.sha3_ctx_t c = Keccak.SHAKE256_init();
+		Keccak.sponge_update(c, keyData, 0, keyData.length);
+		Keccak.sponge_final(c);
+		byte[] fp = new byte[32];
+		Keccak.sponge_squeeze(c, fp, 0, fp.length);
+		return HexFormat.of().formatHex(fp);
+	}
+
+	/**
+	 * Sets how many keys are kept, least recently used go first.
+	 * @param size the new bound, 0 turns the cache off
+	 */
+	public static void setCacheSize(int size) {
+		if (size < 0)
+			throw new IllegalArgumentException("cache size " + size);
+		synchronized (cache) {
+			cacheSize = size;
+			while (cache.size() > size)
+				cache.remove(cache.keySet().iterator().next());
+		}
+	}
+
+	/**
+	 * Drops every cached key and resets the counters.
+	 */
+	public static void clear() {
+		synchronized (cache) {
+			cache.clear();
+			hits = misses = 0;
+		}
+	}
+
+	public static long hits() {
+		synchronized (cache) {
+			return hits;
+		}
+	}
+
+	public static long misses() {
+		synchronized (cache) {
+			return misses;
+		}
+	}
+
+	public static int size() {
+		synchronized (cache) {
+			return cache.size();
+		}
+	}
+}
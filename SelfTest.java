@@ -0,0 +1,308 @@
+import java.io.IOException;
+import java.io.PrintStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ *
+ * Known-answer self-test
+ *
+ * Checks the Keccak layer against the NIST SP 800-185 samples (KMACXOF256 samples 4 - 6,
+ * ParallelHash256 and ParallelHashXOF256 samples 4 - 6) through each entry point the
+ * sponge has, the fixed-limb FieldElement against BigInteger arithmetic mod p on edge
+ * values and FIELD_SAMPLES seeded random ones, and the application layer against outputs
+ * of the original implementation:
+ * a hash and a MAC, a symmetric cryptogram, a public key file and its encrypted private
+ * key, an elliptic cryptogram and a signature, all made from the fixed passphrase PW and
+ * message M before any of the optimizations went in. Hashes, MACs and signatures are
+ * deterministic, so they must come out byte for byte; cryptograms are random and key
+ * files are now written compressed, so the old ones must still be read.
+ *
+ * Runs from the command line (java Main selftest, exit status 0 when everything passes)
+ * and in the Maven test phase.
+ *
+ * @authors Lindsay Ding, Alan Thompson, Christopher Henderson
+ *
+ */
+public class SelfTest {
+
+	private static final byte[]
+		EMPTY = {}, // S = "" in the samples; Main.$NULL is a single zero byte
+		PW = "correct horse battery staple".getBytes(),
+		M = "Known-answer self-test message, option by option.".getBytes();
+
+	// outputs of the original implementation for PW and M (options 2, 4, 5, 7, 8 and 11)
+	private static final String
+		LEGACY_HASH = "faef481bd50eab0951c422bef89b3da19f5f77089b23e867fe23f66ffbfcc79e5bf58db3a827821e442a12adaaf97104" +
+			"20d83fbff724c4ea57ff95183e7c1b01",
+		LEGACY_MAC = "b5d1d05016d2f4f7d04e1286bfe9d788f9f9a5642e8a1c582103141eaa368760406afe95ef32e0d01db2d1981e58fff4" +
+			"f77ab861bacc0984c42f2c3a6b87cf53",
+		LEGACY_CRYPTOGRAM = "1ce2a9c12420422877409eeb241d5d4b016c471a3a7db60fc3a0c299e551cdaf798e67169db046f5dfc59b8e8b87a0c3" +
+			"a9c41b82170936d9cc3194cd7f70ff2ceab12e45cbfc24db0e6e47841ee24286b7f4f977d222c0f4c404e23fc3a5fa26" +
+			"e69ccdcc72474a7a53005165f110fb28495d5b9ab855454f27b0feedf676a9aafb36dbbad18cdc0a685df89ff1f4a96e" +
+			"a384a26fa2a214ec0161001eda7a873a8bbaa686753dfaffbb4ac7cafde7b55444",
+		LEGACY_PUBLIC_KEY = "00000038000000384299909ec317a68f33c0d9fc820995015d3379c277c9f970813076ba9e30290d892c412f4eca1c94" +
+			"13a4aa0ae897bcf8c3910a9e4c9fa6f636225b0316215c85dea460e03bc6e18c99e1443f720c758ee747d6a5864fa6e7" +
+			"9f9ba7db2ccdaca803ea137a8169cfbb691c0a3ecc8f60b7",
+		LEGACY_PRIVATE_KEY = "49e5e27eca5103fb9ea1fc20dc316c8277c23071755730056ee36ad256b44cd4c8722f1ff4fda58394975b4c579f4e06" +
+			"a09723510daa05f31651923d6a626dbfb165a7c6d1d3665164cfece42c09fd266a3792b7e70c8fed8146b39c6d1b2df5" +
+			"86867ef51d620b91c8bcbe1e55dcf7d633f757c3fd9b21f93cae7aa28a7da818bfcd12acee896910e9e5d049d8c081d6" +
+			"dbad493a223d9bfc997d95f078ee4c2ad053b13f7feeaceb5639874c1e3f75e6ee6fa42ba78096a8",
+		LEGACY_EC_CRYPTOGRAM = "000000390000003800c6f06bfc3f92b76312d8eae67dcd51806183185473d1e2150d6be326997ce636e24d70d3524288" +
+			"1830e2427fd17c187889b070c4dc92535501481e68b0ebede39aae4a78f447964a0d874f0b9df94ece16095f3f6395c9" +
+			"27ad5d0318c593f86cb9bfd4cdb9cba47e8e6677bd84ea14bd481799be3ad2d47da3c0020ebf132f5c83cb585f0e5f86" +
+			"fcd48519335d9cf1a03e50cfd480b818c4434b70cb7ccde2c0271c9015508d4c413ede0ef83419f806b3eab41297f816" +
+			"3da9de0b674c7401c5a6a1e5e30f518ce70da87c41ac723a7c29309cc41af753944d1bb53e5163a43fc6",
+		LEGACY_SIGNATURE = "038627b545d91a8803806faa55b30dc0e32379c71acc1d698f9395fc958ac2500c100adc6b248bec79adba0319ce31d5" +
+			"d3f4c5d86e55a9da3403cf4a81cc4280723795f2158e1ceca29b82b18457ae75157550b8cf77abee62cea7ba8d8eb7e0" +
+			"6d8195f7af18a02e5e0a2298252291472240e2152f264f40";
+
+	// NIST SP 800-185 samples: K = 40 .. 5F, X = 00 .. 03 or 00 .. C7, L = 512
+	private static final String
+		KMACXOF256_4 = "1755133f1534752aad0748f2c706fb5c784512cab835cd15676b16c0c6647fa96faa7af634a0bf8ff6df39374fa00fad" +
+			"9a39e322a7c92065a64eb1fb0801eb2b",
+		KMACXOF256_5 = "ff7b171f1e8a2b24683eed37830ee797538ba8dc563f6da1e667391a75edc02ca633079f81ce12a25f45615ec8997203" +
+			"1d18337331d24ceb8f8ca8e6a19fd98b",
+		KMACXOF256_6 = "d5be731c954ed7732846bb59dbe3a8e30f83e77a4bff4459f2f1c2b4ecebb8ce67ba01c62e8ab8578d2d499bd1bb2767" +
+			"68781190020a306a97de281dcc30305d";
+
+	// X = 00 .. 07 10 .. 17 20 .. 27 with B = 8, or 00 .. 87 in the same pattern with B = 12, L = 512
+	private static final String
+		PARALLELHASH256_4 = "bc1ef124da34495e948ead207dd9842235da432d2bbc54b4c110e64c451105531b7f2a3e0ce055c02805e7c2de1fb746" +
+			"af97a1dd01f43b824e31b87612410429",
+		PARALLELHASH256_5 = "cdf15289b54f6212b4bc270528b49526006dd9b54e2b6add1ef6900dda3963bb33a72491f236969ca8afaea29c682d47" +
+			"a393c065b38e29fae651a2091c833110",
+		PARALLELHASH256_6 = "1a6f071d7752099ef6f53b8315274deaf181e8976fa4dddab530d5425a4d8dc935d604873b27a5238f3dd9bacd0f77d7" +
+			"8b1c0f0fce229091439698286647fc15",
+		PARALLELHASHXOF256_4 = "c10a052722614684144d28474850b410757e3cba87651ba167a5cbddff7f466675fbf84bcae7378ac444be681d729499" +
+			"afca667fb879348bfdda427863c82f1c",
+		PARALLELHASHXOF256_5 = "538e105f1a22f44ed2f5cc1674fbd40be803d9c99bf5f8d90a2c8193f3fe6ea768e5c1a20987e2c9c65febed03887a51" +
+			"d35624ed12377594b5585541dc377efc",
+		PARALLELHASHXOF256_6 = "3a430d38e6679b97c95280396695fd712063de345edc9b998c5d24927eb4184b170cc672fee1726bbb7528f21fb979ab" +
+			"5047d19229ef20922be7e1d706007c94";
+
+	/** Random operand pairs the field arithmetic is checked on, besides the edge values */
+	static final int FIELD_SAMPLES = 500;
+
+	private final PrintStream out;
+	private int run, failed;
+
+	private SelfTest(PrintStream out) {
+		this.out = out;
+	}
+
+	/**
+	 * Runs every check, printing the ones that fail and a summary.
+	 * @return the number of failed checks
+	 */
+	public static int run(PrintStream out) {
+		SelfTest t = new SelfTest(out);
+		t.section("Keccak", t::keccak);
+		t.section("field", t::field);
+		t.section("compatibility", t::legacy);
+		out.println("self-test: " + (t.run - t.failed) + " of " + t.run + " checks passed");
+		return t.failed;
+	}
+
+	public static void main(String[] args) {
+		System.exit(run(System.out) == 0 ? 0 : 1);
+	}
+
+	private void keccak() {
+		byte[] K = range(0x40, 32), X4 = range(0x00, 4), X200 = range(0x00, 200), tag = "My Tagged Application".getBytes();
+		kmac("KMACXOF256 sample 4", K, X4, tag, KMACXOF256_4);
+		kmac("KMACXOF256 sample 5", K, X200, EMPTY, KMACXOF256_5);
+		kmac("KMACXOF256 sample 6", K, X200, tag, KMACXOF256_6);
+
+		byte[] P = blocks(3), P6 = blocks(9), data = "Parallel Data".getBytes();
+		check("ParallelHash256 sample 4", ParallelHash.ParallelHash256(P, 8, 512, EMPTY), PARALLELHASH256_4);
+		check("ParallelHash256 sample 5", ParallelHash.ParallelHash256(P, 8, 512, data), PARALLELHASH256_5);
+		check("ParallelHash256 sample 6", ParallelHash.ParallelHash256(P6, 12, 512, data), PARALLELHASH256_6);
+		check("ParallelHashXOF256 sample 4", ParallelHash.ParallelHashXOF256(P, 8, 512, EMPTY), PARALLELHASHXOF256_4);
+		check("ParallelHashXOF256 sample 5", ParallelHash.ParallelHashXOF256(P, 8, 512, data), PARALLELHASHXOF256_5);
+		check("ParallelHashXOF256 sample 6", ParallelHash.ParallelHashXOF256(P6, 12, 512, data), PARALLELHASHXOF256_6);
+
+		// mixed lengths, so equal-length groups, leftovers and the scalar fallback all run
+		byte[][] mixed = new byte[3 * KeccakMulti.LANES + 5][];
+		for (int i = 0; i < mixed.length; i++)
+			mixed[i] = range(i, i % 3 == 0 ? 200 : i % 3 == 1 ? 136 : i);
+		byte[][] multi = KeccakMulti.KMACXOF256(K, mixed, 512, tag);
+		boolean ok = true;
+		for (int i = 0; i < mixed.length; i++)
+			ok &= Arrays.equals(multi[i], Keccak.KMACXOF256(K, mixed[i], 512, tag));
+		check("multi-buffer KMACXOF256" + (KeccakMulti.isVectorized() ? ", " + KeccakMulti.LANES + " lanes" : ""), ok);
+	}
+
+	// one sample through the one-shot, cached, incremental, ByteBuffer and batch entry points
+	private void kmac(String name, byte[] K, byte[] X, byte[] S, String expected) {
+		check(name, Keccak.KMACXOF256(K, X, 512, S), expected);
+		check(name + ", cached prefix", Keccak.KMACXOF256_cached(K, X, 512, S), expected);
+
+		Keccak.sha3_ctx_t c = Keccak.KMACXOF256_init(K, S);
+		for (int i = 0; i < X.length; i += 7) // odd pieces, across block and lane boundaries
+			Keccak.sponge_update(c, X, i, Math.min(7, X.length - i));
+		byte[] md = new byte[64];
+		for (int i = 0; i < md.length; i += 13)
+			Keccak.sponge_squeeze(c, md, i, Math.min(13, md.length - i));
+		check(name + ", incremental", md, expected);
+
+		ByteBuffer direct = ByteBuffer.allocateDirect(X.length + 3);
+		direct.position(3);
+		direct.put(X).position(3);
+		check(name + ", direct buffer", Keccak.KMACXOF256(K, direct, 512, S), expected);
+
+		check(name + ", batch", BatchHash.KMACXOF256(K, new byte[][] {X, X}, 512, S)[1], expected);
+	}
+
+	private void field() {
+		BigInteger p = FieldElement.P, t = BigInteger.ONE.shiftLeft(224), d = BigInteger.valueOf(39081);
+		BigInteger[] edge = {BigInteger.ZERO, BigInteger.ONE, BigInteger.TWO, p.subtract(BigInteger.ONE), p.subtract(BigInteger.TWO),
+				t, t.subtract(BigInteger.ONE), t.add(BigInteger.ONE), BigInteger.ONE.shiftLeft(447), p.subtract(t)};
+		String[] ops = {"add", "sub", "neg", "mul", "sqr", "mulSmall", "chained without full reduction",
+				"invert", "sqrt", "sqrtRatio", "pow", "byte form", "isOdd / isZero"};
+		boolean[] ok = new boolean[ops.length];
+		Arrays.fill(ok, true);
+		Random random = new Random(448);
+		BigInteger half = p.shiftRight(1); // (p - 1) / 2, the Euler criterion exponent
+
+		for (int n = 0; n < edge.length * edge.length + FIELD_SAMPLES; n++) {
+			boolean fixed = n < edge.length * edge.length;
+			BigInteger x = fixed ? edge[n / edge.length] : new BigInteger(448, random).mod(p);
+			BigInteger y = fixed ? edge[n % edge.length] : new BigInteger(448, random).mod(p);
+			FieldElement X = new FieldElement(x), Y = new FieldElement(y), Z = new FieldElement();
+
+			ok[0] &= same(Z.add(X, Y), x.add(y).mod(p));
+			ok[1] &= same(Z.sub(X, Y), x.subtract(y).mod(p));
+			ok[2] &= same(Z.neg(X), x.negate().mod(p));
+			ok[3] &= same(Z.mul(X, Y), x.multiply(y).mod(p));
+			ok[4] &= same(Z.sqr(X), x.multiply(x).mod(p));
+			ok[5] &= same(Z.mulSmall(X, 39081), x.multiply(d).mod(p));
+
+			// results fed back in while only weakly reduced, as the curve formulas do
+			Z.add(X, Y).sub(Z, Y).sqr(Z).mul(Z, Z).neg(Z).mulSmall(Z, 39081).add(Z, Z).sqr(Z);
+			BigInteger z = x.pow(4).negate().multiply(d).shiftLeft(1).pow(2).mod(p);
+			ok[6] &= same(Z, z);
+			ok[12] &= Z.isOdd() == z.testBit(0) && Z.isZero() == (z.signum() == 0);
+
+			ok[7] &= same(new FieldElement().invert(X), x.signum() == 0 ? BigInteger.ZERO : x.modInverse(p));
+
+			FieldElement R = new FieldElement();
+			boolean square = x.signum() == 0 || x.modPow(half, p).equals(BigInteger.ONE);
+			ok[8] &= R.sqrt(X) == square && (!square || same(R.sqr(R), x));
+			if (y.signum() != 0) {
+				BigInteger ratio = x.multiply(y.modInverse(p)).mod(p);
+				square = ratio.signum() == 0 || ratio.modPow(half, p).equals(BigInteger.ONE);
+				ok[9] &= R.sqrtRatio(X, Y) == square && (!square || same(R.sqr(R).mul(R, Y), x));
+			}
+
+			BigInteger e = new BigInteger(64, random);
+			ok[10] &= same(new FieldElement().pow(X, e), x.modPow(e, p));
+
+			byte[] b = new byte[FieldElement.BYTES];
+			X.getBytes(b, 0);
+			ok[11] &= Z.setBytes(b, 0) && same(Z, x);
+		}
+		byte[] pBytes = new byte[FieldElement.BYTES]; // p itself is not a canonical encoding
+		byte[] be = p.toByteArray();
+		for (int i = 0; i < pBytes.length; i++)
+			pBytes[i] = be[be.length - 1 - i];
+		ok[11] &= !new FieldElement().setBytes(pBytes, 0);
+
+		for (int i = 0; i < ops.length; i++)
+			check("FieldElement " + ops[i] + " against BigInteger", ok[i]);
+	}
+
+	private static boolean same(FieldElement a, BigInteger b) {
+		return a.toBigInteger().equals(b);
+	}
+
+	private void legacy() {
+		byte[] key = hex(LEGACY_PUBLIC_KEY), sig = hex(LEGACY_SIGNATURE);
+		check("hash (option 2)", Operations.hash(M), LEGACY_HASH);
+		check("MAC (option 4)", Operations.mac(M, PW), LEGACY_MAC);
+		check("decrypt an old cryptogram (option 6)", Operations.decrypt(hex(LEGACY_CRYPTOGRAM), PW), M);
+		Point V = Keyring.get(PW).publicKey().point();
+		check("read an old public key file (option 7)", V.equals(util.pointDataUnzip(key)));
+		check("public key file round trip", V.equals(util.pointDataUnzip(util.pointDataZip(V))));
+		check("old private key file", Operations.decrypt(hex(LEGACY_PRIVATE_KEY), PW), Keyring.deriveScalar(PW).toByteArray());
+		check("decrypt an old elliptic cryptogram (option 10)", Operations.decryptElliptic(hex(LEGACY_EC_CRYPTOGRAM), PW), M);
+		check("signature (option 11)", Operations.sign(M, PW), sig);
+		check("verify an old signature (option 13)", Operations.verify(M, sig, key));
+		byte[] forged = M.clone();
+		forged[0] ^= 1;
+		check("reject a signature of another message", !Operations.verify(forged, sig, key));
+		check("round trip under an old public key", Operations.decryptElliptic(Operations.encryptElliptic(M, key), PW), M);
+
+		Path dir = null;
+		try {
+			dir = Files.createTempDirectory("selftest");
+			Path message = Files.write(dir.resolve("m"), M), gram = Files.write(dir.resolve("m.enc"), hex(LEGACY_CRYPTOGRAM)), plain = dir.resolve("m.dec");
+			check("hash a file (option 1)", Operations.hashFile(message.toString()), LEGACY_HASH);
+			check("MAC a file (option 3)", Operations.macFile(message.toString(), PW), LEGACY_MAC);
+			check("stream-decrypt an old cryptogram file (option 6)", Operations.decryptFile(gram.toString(), plain.toString(), PW) && Arrays.equals(Files.readAllBytes(plain), M));
+		} catch (IOException e) {
+			check("temporary files: " + e, false);
+		} finally {
+			if (dir != null) delete(dir);
+		}
+	}
+
+	// a section that throws counts as one more failure, the other sections still run
+	private void section(String name, Runnable body) {
+		try {
+			body.run();
+		} catch (RuntimeException | Error e) {
+			check(name + " checks threw " + e, false);
+		}
+	}
+
+	private void check(String name, byte[] actual, String expected) {
+		check(name, actual, hex(expected));
+	}
+
+	private void check(String name, byte[] actual, byte[] expected) {
+		check(name, Arrays.equals(actual, expected));
+	}
+
+	private void check(String name, boolean ok) {
+		run++;
+		if (!ok) {
+			failed++;
+			out.println("FAILED: " + name);
+		}
+	}
+
+	// n bytes counting up from first
+	private static byte[] range(int first, int n) {
+		byte[] b = new byte[n];
+		for (int i = 0; i < n; i++)
+			b[i] = (byte) (first + i);
+		return b;
+	}
+
+	// 00 .. 07 10 .. 17 ... for n groups of 8, the ParallelHash sample messages
+	private static byte[] blocks(int n) {
+		byte[] b = new byte[8 * n];
+		for (int i = 0; i < b.length; i++)
+			b[i] = (byte) (0x10 * (i / 8) + i % 8);
+		return b;
+	}
+
+	private static byte[] hex(String s) {
+		return HexFormat.of().parseHex(s);
+	}
+
+	private static void delete(Path dir) {
+		try (Stream<Path> files = Files.list(dir)) {
+			for (Path f : (Iterable<Path>) files::iterator)
+				Files.deleteIfExists(f);
+			Files.deleteIfExists(dir);
+		} catch (IOException ignored) {}
+	}
+}
@@ -0,0 +1,253 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ *
+ * Encryption of every file in a directory tree
+ *
+ * A three stage pipeline: IO_THREADS readers load files, a pool of crypto workers turn
+ * them into cryptograms (Operations.encrypt or Operations.encryptElliptic, the formats of
+ * options 5 and 8), and IO_THREADS writers store them under the destination directory,
+ * mirroring the tree, with SUFFIX appended. The stages hand files over through bounded
+ * queues of QUEUE_PER_WORKER entries per worker, so reading stalls while the workers are
+ * behind and at most a few files per worker are held in memory; disk reads, crypto and
+ * writes overlap.
+ *
+ * Files of STREAM_THRESHOLD bytes and more skip the readers and writers when encrypting
+ * under a passphrase: the worker streams them with util.symmetricEncryptFile instead of
+ * holding them whole. Under a public key there is no streaming form, so files over
+ * MAX_LOADED are refused without being read. A file that fails is reported in the summary,
+ * the rest go on; anything worse (an Error in any stage) stops every stage and is thrown.
+ *
+ * @authors Lindsay Ding, Alan Thompson, Christopher Henderson
+ *
+ */
+public class TreeEncrypt {
+
+	/** Appended to the name of every cryptogram written */
+	static final String SUFFIX = ".enc";
+
+	/** Readers and, separately, writers */
+	static final int IO_THREADS = 2;
+
+	/** Queue slots between two stages, per crypto worker */
+	static final int QUEUE_PER_WORKER = 2;
+
+	/** Size from which a file is streamed through the cipher rather than loaded */
+	static final long STREAM_THRESHOLD = 64L << 20;
+
+	/** Largest file encrypted under a public key, which is held whole in memory */
+	static final long MAX_LOADED = 256L << 20;
+
+	/**
+	 * What a run did
+	 */
+	public static final class Summary {
+		public final int files, failed;
+		public final long bytes, nanos;
+		public final List<String> errors;
+
+		Summary(int files, long bytes, long nanos, List<String> errors) {
+			this.files = files;
+			this.failed = errors.size();
+			this.bytes = bytes;
+			this.nanos = nanos;
+			this.errors = errors;
+		}
+
+		public double mbPerSecond() {
+			return bytes / 1e6 / (nanos / 1e9);
+		}
+
+		public double filesPerSecond() {
+			return files / (nanos / 1e9);
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d files, %.1f MB encrypted, %d failed, %.3f s, %.1f MB/s, %.1f files/s",
+					files, bytes / 1e6, failed, nanos / 1e9, mbPerSecond(), filesPerSecond());
+		}
+	}
+
+	/**
+	 * Encrypt every file under src symmetrically under pw (option 5).
+	 * @param dst where the cryptograms go, created if needed
+	 * @param workers how many crypto workers run
+	 * @throws IOException if src cannot be walked
+	 */
+	public static Summary encrypt(Path src, Path dst, byte[] pw, int workers) throws IOException {
+		return run(src, dst, m -> Operations.encrypt(m, pw), pw, workers);
+	}
+
+	/**
+	 * Encrypt every file under src under an elliptic public key (option 8).
+	 * @param keyData the public key file contents
+	 * @throws IllegalArgumentException if keyData is not a public key
+	 * @throws IOException if src cannot be walked
+	 */
+	public static Summary encryptElliptic(Path src, Path dst, byte[] keyData, int workers) throws IOException {
+		if (PublicKeyCache.get(keyData) == null)
+			throw new IllegalArgumentException(Main.NAUGHTY);
+		return run(src, dst, m -> Operations.encryptElliptic(m, keyData), null, workers);
+	}
+
+	// a file on its way through the pipeline; data null for one the worker streams itself
+	private static final class Job {
+		final Path source, target;
+		final byte[] data;
+		final long size; // of the plaintext
+
+		Job(Path source, Path target, byte[] data, long size) {
+			this.source = source;
+			this.target = target;
+			this.data = data;
+			this.size = size;
+		}
+	}
+
+	// tells the next stage that this one is done
+	private static final Job END = new Job(null, null, null, 0);
+
+	private static Summary run(Path src, Path dst, UnaryOperator<byte[]> cipher, byte[] pw, int workers) throws IOException {
+		if (workers < 1)
+			throw new IllegalArgumentException("workers " + workers);
+		Path root = src.toAbsolutePath().normalize(), out = dst.toAbsolutePath().normalize();
+		List<Path> files;
+		try (Stream<Path> walk = Files.walk(root)) { // listed up front, so nothing written below is picked up
+			files = walk.filter(Files::isRegularFile).filter(p -> !p.startsWith(out)).collect(Collectors.toList());
+		}
+
+		BlockingQueue<Job> toCrypt = new ArrayBlockingQueue<>(workers * QUEUE_PER_WORKER);
+		BlockingQueue<Job> toWrite = new ArrayBlockingQueue<>(workers * QUEUE_PER_WORKER);
+		AtomicInteger next = new AtomicInteger(), readersLeft = new AtomicInteger(IO_THREADS), workersLeft = new AtomicInteger(workers);
+		LongAdder bytes = new LongAdder();
+		List<String> errors = Collections.synchronizedList(new ArrayList<>());
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+
+		long start = System.nanoTime();
+		ExecutorService threads = Executors.newFixedThreadPool(2 * IO_THREADS + workers);
+		try {
+			for (int i = 0; i < IO_THREADS; i++) threads.execute(stage(threads, failure, () -> {
+				for (int j; !Thread.currentThread().isInterrupted() && (j = next.getAndIncrement()) < files.size(); ) {
+					Path f = files.get(j), target = out.resolve(root.relativize(f) + SUFFIX);
+					Job job = null;
+					try {
+						long size = Files.size(f);
+						if (pw == null && size > MAX_LOADED)
+							errors.add(f + ": " + size + " bytes, too large to encrypt under a public key (at most " + MAX_LOADED + ")");
+						else {
+							byte[] data = pw != null && size >= STREAM_THRESHOLD ? null : Files.readAllBytes(f);
+							job = new Job(f, target, data, data != null ? data.length : size);
+						}
+					} catch (IOException | RuntimeException e) {
+						errors.add(f + ": " + e);
+					}
+					if (job != null)
+						put(toCrypt, job);
+				}
+			}, () -> {
+				if (readersLeft.decrementAndGet() == 0)
+					for (int k = 0; k < workers; k++) put(toCrypt, END);
+			}));
+
+			for (int i = 0; i < workers; i++) threads.execute(stage(threads, failure, () -> {
+				for (Job job; (job = take(toCrypt)) != END; ) {
+					Job done = null;
+					try {
+						if (job.data == null) { // large, straight from disk to disk
+							Files.createDirectories(job.target.getParent());
+							util.symmetricEncryptFile(job.source.toString(), job.target.toString(), pw);
+							bytes.add(job.size);
+						}
+						else done = new Job(job.source, job.target, cipher.apply(job.data), job.size);
+					} catch (IOException | RuntimeException e) {
+						errors.add(job.source + ": " + e);
+					}
+					if (done != null)
+						put(toWrite, done);
+				}
+			}, () -> {
+				if (workersLeft.decrementAndGet() == 0)
+					for (int k = 0; k < IO_THREADS; k++) put(toWrite, END);
+			}));
+
+			for (int i = 0; i < IO_THREADS; i++) threads.execute(stage(threads, failure, () -> {
+				for (Job job; (job = take(toWrite)) != END; ) {
+					try {
+						Files.createDirectories(job.target.getParent());
+						Files.write(job.target, job.data);
+						bytes.add(job.size);
+					} catch (IOException | RuntimeException e) {
+						errors.add(job.source + ": " + e);
+					}
+				}
+			}, () -> {}));
+
+			threads.shutdown();
+			while (!threads.awaitTermination(1, TimeUnit.MINUTES));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted", e);
+		} finally {
+			threads.shutdownNow();
+		}
+		Throwable t = failure.get();
+		if (t instanceof Error)
+			throw (Error) t;
+		if (t != null)
+			throw new IOException("tree encryption stopped", t);
+		return new Summary(files.size() - errors.size(), bytes.sum(), System.nanoTime() - start, new ArrayList<>(errors));
+	}
+
+	/*
+	 * One stage thread: the hand-off to the next stage runs however the body ends, so the
+	 * stages downstream always see their ENDs. If the body dies, the first failure is kept
+	 * and every thread is interrupted; the stages blocked on a queue then give up too.
+	 */
+	private static Runnable stage(ExecutorService threads, AtomicReference<Throwable> failure, Runnable body, Runnable handOff) {
+		return () -> {
+			try {
+				body.run();
+			} catch (Throwable t) {
+				if (failure.compareAndSet(null, t))
+					threads.shutdownNow();
+			} finally {
+				try {handOff.run();}
+				catch (RuntimeException interrupted) {} // aborting, nobody is left to wait for END
+			}
+		};
+	}
+
+	// once interrupted, the flag stays set, so every later put or take fails at once
+	private static void put(BlockingQueue<Job> q, Job job) {
+		try {q.put(job);}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted", e);
+		}
+	}
+
+	private static Job take(BlockingQueue<Job> q) {
+		try {return q.take();}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted", e);
+		}
+	}
+}
@@ -0,0 +1,192 @@
+import java.math.BigInteger;
+
+/**
+ * Variable-base scalar multiplication k * P with a width-w non-adjacent form of k.
+ *
+ * The w-NAF writes k = sum d_i 2^i with every nonzero digit odd, |d_i| < 2^(w-1), and
+ * at least w - 1 zeros after each nonzero digit, so on average only one in w + 1
+ * doublings is followed by an addition (plain binary: one in two). Negative digits
+ * subtract, which is as cheap as adding on an Edwards curve, so the table only needs
+ * the odd multiples P, 3P, .., (2^(w-1) - 1) P.
+ *
+ * The width defaults to 5 (8 table entries) and can be set with -Dwnaf.width=2..8.
+ *
+ * @authors Lindsay Ding, Alan Thompson, Christopher Henderson
+ *
+ */
+public final class WNAF {
+
+	static final int MIN_WIDTH = 2, MAX_WIDTH = 8;
+
+	public static final int DEFAULT_WIDTH = Math.max(MIN_WIDTH,
+			Math.min(MAX_WIDTH, Integer.getInteger("wnaf.width", 5)));
+
+	private WNAF() {
+	}
+
+	/**
+	 * @param P a point on the curve
+	 * @param k the scalar factor, any sign
+	 * @return k * P using the default width
+	 */
+	public static Point multiply(Point P, BigInteger k) {
+		return multiply(P, k, DEFAULT_WIDTH);
+	}
+
+	/**
+	 * @param P a point on the curve
+	 * @param k the scalar factor, any sign
+	 * @param w the window width, 2 to 8
+	 * @return k * P
+	 */
+	public static Point multiply(Point P, BigInteger k, int w) {
+		return multiply(oddMultiples(P, w, false), false, k, w);
+	}
+
+	/**
+	 * @param table odd multiples of a point from oddMultiples for the same w
+	 * @param affine whether the table is normalized (Z = 1), which allows mixed additions
+	 * @param k the scalar factor, any sign
+	 * @param w the window width the table was built for
+	 * @return k * P
+	 */
+	static Point multiply(ExtendedPoint[] table, boolean affine, BigInteger k, int w) {
+		return evaluate(table, affine, k, w).toPoint();
+	}
+
+	/**
+	 * a * P + b * Q with one shared chain of doublings (Straus/Shamir's trick): both
+	 * w-NAFs are walked together, so the cost is about one scalar multiplication's
+	 * doublings plus the additions of both. Multiples of G use a larger table built once.
+	 * @param P a point on the curve
+	 * @param a its scalar factor, any sign
+	 * @param Q a point on the curve
+	 * @param b its scalar factor, any sign
+	 * @return a * P + b * Q
+	 */
+	public static Point multiply(Point P, BigInteger a, Point Q, BigInteger b) {
+		ExtendedPoint[][] tables = {null, null};
+		boolean[] affine = {false, false};
+		int[] w = {DEFAULT_WIDTH, DEFAULT_WIDTH};
+		Point[] points = {P, Q};
+		for (int j = 0; j < 2; j++) {
+			if (points[j].equals(Point.G)) {
+				tables[j] = GTable.T;
+				affine[j] = true;
+				w[j] = G_WIDTH;
+			} else {
+				tables[j] = oddMultiples(points[j], w[j], false);
+			}
+		}
+		return evaluate(tables, affine, new BigInteger[] {a, b}, w).toPoint();
+	}
+
+	/**
+	 * a * G + b * Q where the odd multiples of Q are already known
+	 * @param qTable odd multiples of Q from oddMultiples(Q, w, true)
+	 * @param w the window width qTable was built for
+	 */
+	static Point multiplyWithG(BigInteger a, ExtendedPoint[] qTable, int w, BigInteger b) {
+		return evaluate(new ExtendedPoint[][] {GTable.T, qTable}, new boolean[] {true, true},
+				new BigInteger[] {a, b}, new int[] {G_WIDTH, w}).toPoint();
+	}
+
+	// odd multiples of G up to 63 G, normalized, built on first use
+	static final int G_WIDTH = 7;
+
+	private static final class GTable {
+		static final ExtendedPoint[] T = oddMultiples(Point.G, G_WIDTH, true);
+	}
+
+	// k * P in extended coordinates
+	static ExtendedPoint evaluate(ExtendedPoint[] table, boolean affine, BigInteger k, int w) {
+		return evaluate(new ExtendedPoint[][] {table}, new boolean[] {affine}, new BigInteger[] {k}, new int[] {w});
+	}
+
+	// sum of k[j] * P_j in extended coordinates, table[j] holding the odd multiples of P_j for width w[j]
+	static ExtendedPoint evaluate(ExtendedPoint[][] table, boolean[] affine, BigInteger[] k, int[] w) {
+		int n = k.length, top = -1;
+		if (Metrics.ENABLED) Metrics.SCALAR_MULTIPLICATIONS.add(n);
+		int[][] naf = new int[n][];
+		for (int j = 0; j < n; j++) {
+			naf[j] = naf(k[j].abs(), w[j]);
+			if (k[j].signum() < 0)
+				for (int i = 0; i < naf[j].length; i++)
+					naf[j][i] = -naf[j][i];
+			for (int i = naf[j].length - 1; i > top; i--)
+				if (naf[j][i] != 0) {
+					top = i;
+					break;
+				}
+		}
+		ExtendedPoint R = new ExtendedPoint(), neg = new ExtendedPoint();
+		for (int i = top; i >= 0; i--) {
+			if (i < top)
+				R.dbl();
+			for (int j = 0; j < n; j++) {
+				int d = i < naf[j].length ? naf[j][i] : 0;
+				if (d == 0)
+					continue;
+				ExtendedPoint Q = d > 0 ? table[j][d >> 1] : neg.set(table[j][-d >> 1]).negate();
+				if (affine[j])
+					R.addAffine(Q);
+				else
+					R.add(Q);
+			}
+		}
+		return R;
+	}
+
+	/**
+	 * @param P a point on the curve
+	 * @param w the window width, 2 to 8
+	 * @param normalize whether to bring the entries to Z = 1 (one shared inversion),
+	 *        worth it only when the table is used for several multiplications
+	 * @return P, 3P, 5P, .., (2^(w-1) - 1) P
+	 */
+	static ExtendedPoint[] oddMultiples(Point P, int w, boolean normalize) {
+		if (w < MIN_WIDTH || w > MAX_WIDTH)
+			throw new IllegalArgumentException("w-NAF width must be between " + MIN_WIDTH + " and " + MAX_WIDTH);
+		ExtendedPoint[] table = new ExtendedPoint[1 << (w - 2)];
+		table[0] = new ExtendedPoint(P);
+		ExtendedPoint P2 = new ExtendedPoint(P).dbl();
+		for (int i = 1; i < table.length; i++)
+			table[i] = new ExtendedPoint().set(table[i - 1]).add(P2);
+		if (normalize)
+			ExtendedPoint.normalize(table);
+		return table;
+	}
+
+	/**
+	 * @param k a non-negative scalar
+	 * @param w the window width
+	 * @return the w-NAF digits of k, least significant first
+	 */
+	static int[] naf(BigInteger k, int w) {
+		int len = k.bitLength();
+		int[] naf = new int[len + w]; // a final carry can land up to w - 1 past the top bit
+		int width = 1 << w, half = width >> 1;
+		int carry = 0, pos = 0;
+		while (pos < len) {
+			if ((k.testBit(pos) ? 1 : 0) == carry) { // this digit is 0, the carry moves on
+				pos++;
+				continue;
+			}
+			int word = carry;
+			for (int j = 0; j < w; j++)
+				if (k.testBit(pos + j))
+					word += 1 << j;
+			if (word >= half) { // odd, so never equal to half; take the negative digit
+				naf[pos] = word - width;
+				carry = 1;
+			} else {
+				naf[pos] = word;
+				carry = 0;
+			}
+			pos += w;
+		}
+		if (carry != 0)
+			naf[pos] = 1;
+		return naf;
+	}
+}
@@ -0,0 +1,34 @@
+package bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ *
+ * Entry point of benchmarks.jar: the JMH command line, with allocation profiling
+ * (-prof gc) always on and the results kept as JSON (jmh-result.json unless -rff says
+ * otherwise), so runs of different releases can be compared.
+ *
+ *   java -jar bench/target/benchmarks.jar                 everything
+ *   java -jar bench/target/benchmarks.jar Curve -f 1      any JMH options
+ *
+ * @authors Lindsay Ding, Alan Thompson, Christopher Henderson
+ *
+ */
+public class BenchmarkMain {
+
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions cli = new CommandLineOptions(args);
+		ChainedOptionsBuilder options = new OptionsBuilder().parent(cli).addProfiler(GCProfiler.class);
+		if (!cli.getResult().hasValue()) {
+			options.result("jmh-result.json");
+			if (!cli.getResultFormat().hasValue())
+				options.resultFormat(ResultFormatType.JSON);
+		}
+		new Runner(options.build()).run();
+	}
+}
@@ -0,0 +1,122 @@
+package bench;
+
+import java.math.BigInteger;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ *
+ * Point addition, every scalar multiplication path, and the point encoding
+ *
+ *   sum                  Point.sum, affine with one inversion
+ *   affineDoubleAndAdd   the original bit by bit loop over Point.sum
+ *   extended             ExtendedPoint.multiply, one inversion at the end
+ *   wnaf                 WNAF.multiply, variable base
+ *   fixedBase            FixedBase.multiply, k*G from the precomputed tables
+ *   cachedKey            PublicKeyCache.Entry.multiply, k*V with the per-key table
+ *   pointMultiplyG       util.pointMultiplyByScalar(G, k), the dispatch callers use
+ *   pointMultiplyV       util.pointMultiplyByScalar(V, k)
+ *   straus               util.pointMultiplyByScalars, a*G + b*V as in verification
+ *   zip / unzip          util.pointDataZip / pointDataUnzip
+ *
+ * Scalars are fixed (seeded), full size modulo r.
+ *
+ * @authors Lindsay Ding, Alan Thompson, Christopher Henderson
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class CurveBenchmark {
+
+	private BigInteger k, b;
+	private Object P, V, entry;
+	private byte[] zipped;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(487);
+		k = new BigInteger(448, random).mod(Subjects.r);
+		b = new BigInteger(448, random).mod(Subjects.r);
+		P = Subjects.multiply(Subjects.G, new BigInteger(448, random).mod(Subjects.r));
+		V = Subjects.multiply(Subjects.G, new BigInteger(448, random).mod(Subjects.r));
+		zipped = Subjects.zip(V);
+		entry = Subjects.cachedKey(zipped);
+		Subjects.multiplyCached(entry, k); // the per-key table is built once, outside the measurement
+	}
+
+	@Benchmark
+	public Object sum() {
+		return Subjects.sum(P, V);
+	}
+
+	@Benchmark
+	public Object affineDoubleAndAdd() {
+		Object R = Subjects.NEUTRAL;
+		for (int i = k.bitLength() - 1; i >= 0; i--) {
+			R = Subjects.sum(R, R);
+			if (k.testBit(i))
+				R = Subjects.sum(R, V);
+		}
+		return R;
+	}
+
+	@Benchmark
+	public Object extended() {
+		return Subjects.multiplyExtended(V, k);
+	}
+
+	@Benchmark
+	public Object wnaf() {
+		return Subjects.multiplyWNAF(V, k);
+	}
+
+	@Benchmark
+	public Object fixedBase() {
+		return Subjects.multiplyFixedBase(k);
+	}
+
+	@Benchmark
+	public Object cachedKey() {
+		return Subjects.multiplyCached(entry, k);
+	}
+
+	@Benchmark
+	public Object pointMultiplyG() {
+		return Subjects.multiply(Subjects.G, k);
+	}
+
+	@Benchmark
+	public Object pointMultiplyV() {
+		return Subjects.multiply(V, k);
+	}
+
+	@Benchmark
+	public Object straus() {
+		return Subjects.multiply(Subjects.G, k, V, b);
+	}
+
+	@Benchmark
+	public byte[] zip() {
+		return Subjects.zip(V);
+	}
+
+	@Benchmark
+	public Object unzip() {
+		return Subjects.unzip(zipped);
+	}
+}
@@ -0,0 +1,84 @@
+package bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ *
+ * The full operations behind the menu options, through Operations as the menu, the
+ * command line and the daemon call them
+ *
+ * Key derivation is not measured: the passphrase's key pair sits in the Keyring and the
+ * public key in the PublicKeyCache after setup, as they do in a long running process.
+ *
+ * @authors Lindsay Ding, Alan Thompson, Christopher Henderson
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class FlowBenchmark {
+
+	@Param({"1024"})
+	public int size;
+
+	private final byte[] pw = "benchmark passphrase".getBytes();
+	private byte[] m, key, gram, ecGram, sig;
+
+	@Setup
+	public void setup() {
+		m = new byte[size];
+		new Random(487).nextBytes(m);
+		key = Subjects.zip(Subjects.multiply(Subjects.G, Subjects.deriveScalar(pw)));
+		gram = Subjects.encrypt(m, pw);
+		ecGram = Subjects.encryptElliptic(m, key);
+		sig = Subjects.sign(m, pw);
+		if (!Subjects.verify(m, sig, key) || Subjects.decryptElliptic(ecGram, pw) == null)
+			throw new IllegalStateException("key pair does not match");
+	}
+
+	@Benchmark
+	public byte[] encrypt() {
+		return Subjects.encrypt(m, pw);
+	}
+
+	@Benchmark
+	public byte[] decrypt() {
+		return Subjects.decrypt(gram, pw);
+	}
+
+	@Benchmark
+	public byte[] encryptElliptic() {
+		return Subjects.encryptElliptic(m, key);
+	}
+
+	@Benchmark
+	public byte[] decryptElliptic() {
+		return Subjects.decryptElliptic(ecGram, pw);
+	}
+
+	@Benchmark
+	public byte[] sign() {
+		return Subjects.sign(m, pw);
+	}
+
+	@Benchmark
+	public boolean verify() {
+		return Subjects.verify(m, sig, key);
+	}
+}
@@ -0,0 +1,49 @@
+package bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ *
+ * Throughput of the bare Keccak-f[1600] permutation, Keccak.sha3_keccakf
+ *
+ * One permutation absorbs a 136 byte rate block of SHAKE256 / KMACXOF256, so
+ * permutations/s * 136 is the ceiling on hashing speed per core.
+ *
+ * @authors Lindsay Ding, Alan Thompson, Christopher Henderson
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class KeccakBenchmark {
+
+	private final long[] st = new long[25];
+
+	@Setup
+	public void setup() {
+		Random random = new Random(487);
+		for (int i = 0; i < st.length; i++)
+			st[i] = random.nextLong();
+	}
+
+	@Benchmark
+	public long[] keccakf() {
+		Subjects.keccakf(st); // in place, each call permutes the previous output
+		return st;
+	}
+}
@@ -0,0 +1,206 @@
+package bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.math.BigInteger;
+
+/**
+ *
+ * The project code the benchmarks call
+ *
+ * The project lives in the unnamed package, which Java code in a named package cannot
+ * import, and JMH refuses benchmark classes in the unnamed package. So every entry point
+ * is looked up once into a static final MethodHandle, with project types (Point and co.)
+ * seen as Object. invokeExact on a constant handle is inlined by the JIT, so the calls
+ * cost what direct calls do.
+ *
+ * @authors Lindsay Ding, Alan Thompson, Christopher Henderson
+ *
+ */
+final class Subjects {
+
+	private static final MethodHandle
+		KECCAKF          = method("Keccak", "sha3_keccakf", long[].class),
+		KMAC             = method("Keccak", "KMACXOF256", byte[].class, byte[].class, int.class, byte[].class),
+		KMAC_CACHED      = method("Keccak", "KMACXOF256_cached", byte[].class, byte[].class, int.class, byte[].class),
+		SUM              = method("Point", "sum", "Point"),
+		MULTIPLY         = method("util", "pointMultiplyByScalar", "Point", BigInteger.class),
+		MULTIPLY_TWO     = method("util", "pointMultiplyByScalars", "Point", BigInteger.class, "Point", BigInteger.class),
+		EXTENDED         = method("ExtendedPoint", "multiply", "Point", BigInteger.class),
+		FIXED_BASE       = method("FixedBase", "multiply", BigInteger.class),
+		WNAF             = method("WNAF", "multiply", "Point", BigInteger.class),
+		CACHE_GET        = method("PublicKeyCache", "get", byte[].class),
+		ENTRY_MULTIPLY   = method("PublicKeyCache$Entry", "multiply", BigInteger.class),
+		ZIP              = method("util", "pointDataZip", "Point"),
+		UNZIP            = method("util", "pointDataUnzip", byte[].class),
+		DERIVE           = method("Keyring", "deriveScalar", byte[].class),
+		ENCRYPT          = method("Operations", "encrypt", byte[].class, byte[].class),
+		DECRYPT          = method("Operations", "decrypt", byte[].class, byte[].class),
+		EC_ENCRYPT       = method("Operations", "encryptElliptic", byte[].class, byte[].class),
+		EC_DECRYPT       = method("Operations", "decryptElliptic", byte[].class, byte[].class),
+		SIGN             = method("Operations", "sign", byte[].class, byte[].class),
+		VERIFY           = method("Operations", "verify", byte[].class, byte[].class, byte[].class);
+
+	/** The generator G, the curve order r and the neutral point */
+	static final Object G = field("Point", "G"), NEUTRAL = construct("Point");
+	static final BigInteger r = (BigInteger) field("Point", "r");
+
+	static void keccakf(long[] st) {
+		try {KECCAKF.invokeExact(st);}
+		catch (Throwable t) {throw rethrow(t);}
+	}
+
+	static byte[] kmac(byte[] K, byte[] X, int L, byte[] S) {
+		try {return (byte[]) KMAC.invokeExact(K, X, L, S);}
+		catch (Throwable t) {throw rethrow(t);}
+	}
+
+	static byte[] kmacCached(byte[] K, byte[] X, int L, byte[] S) {
+		try {return (byte[]) KMAC_CACHED.invokeExact(K, X, L, S);}
+		catch (Throwable t) {throw rethrow(t);}
+	}
+
+	static Object sum(Object P, Object Q) {
+		try {return (Object) SUM.invokeExact(P, Q);}
+		catch (Throwable t) {throw rethrow(t);}
+	}
+
+	static Object multiply(Object P, BigInteger k) {
+		try {return (Object) MULTIPLY.invokeExact(P, k);}
+		catch (Throwable t) {throw rethrow(t);}
+	}
+
+	static Object multiply(Object P, BigInteger a, Object Q, BigInteger b) {
+		try {return (Object) MULTIPLY_TWO.invokeExact(P, a, Q, b);}
+		catch (Throwable t) {throw rethrow(t);}
+	}
+
+	static Object multiplyExtended(Object P, BigInteger k) {
+		try {return (Object) EXTENDED.invokeExact(P, k);}
+		catch (Throwable t) {throw rethrow(t);}
+	}
+
+	static Object multiplyFixedBase(BigInteger k) {
+		try {return (Object) FIXED_BASE.invokeExact(k);}
+		catch (Throwable t) {throw rethrow(t);}
+	}
+
+	static Object multiplyWNAF(Object P, BigInteger k) {
+		try {return (Object) WNAF.invokeExact(P, k);}
+		catch (Throwable t) {throw rethrow(t);}
+	}
+
+	static Object cachedKey(byte[] keyData) {
+		try {return (Object) CACHE_GET.invokeExact(keyData);}
+		catch (Throwable t) {throw rethrow(t);}
+	}
+
+	static Object multiplyCached(Object entry, BigInteger k) {
+		try {return (Object) ENTRY_MULTIPLY.invokeExact(entry, k);}
+		catch (Throwable t) {throw rethrow(t);}
+	}
+
+	static byte[] zip(Object P) {
+		try {return (byte[]) ZIP.invokeExact(P);}
+		catch (Throwable t) {throw rethrow(t);}
+	}
+
+	static Object unzip(byte[] data) {
+		try {return (Object) UNZIP.invokeExact(data);}
+		catch (Throwable t) {throw rethrow(t);}
+	}
+
+	static BigInteger deriveScalar(byte[] pw) {
+		try {return (BigInteger) DERIVE.invokeExact(pw);}
+		catch (Throwable t) {throw rethrow(t);}
+	}
+
+	static byte[] encrypt(byte[] m, byte[] pw) {
+		try {return (byte[]) ENCRYPT.invokeExact(m, pw);}
+		catch (Throwable t) {throw rethrow(t);}
+	}
+
+	static byte[] decrypt(byte[] gram, byte[] pw) {
+		try {return (byte[]) DECRYPT.invokeExact(gram, pw);}
+		catch (Throwable t) {throw rethrow(t);}
+	}
+
+	static byte[] encryptElliptic(byte[] m, byte[] keyData) {
+		try {return (byte[]) EC_ENCRYPT.invokeExact(m, keyData);}
+		catch (Throwable t) {throw rethrow(t);}
+	}
+
+	static byte[] decryptElliptic(byte[] gram, byte[] pw) {
+		try {return (byte[]) EC_DECRYPT.invokeExact(gram, pw);}
+		catch (Throwable t) {throw rethrow(t);}
+	}
+
+	static byte[] sign(byte[] m, byte[] pw) {
+		try {return (byte[]) SIGN.invokeExact(m, pw);}
+		catch (Throwable t) {throw rethrow(t);}
+	}
+
+	static boolean verify(byte[] m, byte[] sig, byte[] keyData) {
+		try {return (boolean) VERIFY.invokeExact(m, sig, keyData);}
+		catch (Throwable t) {throw rethrow(t);}
+	}
+
+	/**
+	 * @param params parameter types, a String naming a project class
+	 * @return the method as a handle on which project types are Object
+	 */
+	private static MethodHandle method(String owner, String name, Object... params) {
+		try {
+			Class<?>[] types = new Class<?>[params.length];
+			for (int i = 0; i < params.length; i++)
+				types[i] = params[i] instanceof String ? Class.forName((String) params[i]) : (Class<?>) params[i];
+			Method m = Class.forName(owner).getDeclaredMethod(name, types);
+			m.setAccessible(true);
+			MethodHandle h = MethodHandles.lookup().unreflect(m);
+			return h.asType(erase(h.type()));
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	// project classes, which a named package cannot name, become Object
+	private static MethodType erase(MethodType type) {
+		for (int i = 0; i < type.parameterCount(); i++)
+			if (type.parameterType(i).getPackageName().isEmpty() && !type.parameterType(i).isPrimitive())
+				type = type.changeParameterType(i, Object.class);
+		if (type.returnType().getPackageName().isEmpty() && !type.returnType().isPrimitive())
+			type = type.changeReturnType(Object.class);
+		return type;
+	}
+
+	private static Object field(String owner, String name) {
+		try {
+			Field f = Class.forName(owner).getDeclaredField(name);
+			f.setAccessible(true);
+			return f.get(null);
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	private static Object construct(String owner) {
+		try {
+			return Class.forName(owner).getConstructor().newInstance();
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	private static RuntimeException rethrow(Throwable t) {
+		if (t instanceof RuntimeException)
+			return (RuntimeException) t;
+		if (t instanceof Error)
+			throw (Error) t;
+		return new IllegalStateException(t);
+	}
+
+	private Subjects() {}
+}
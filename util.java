@@ -2,10 +2,19 @@
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
 import java.util.Arrays;
 import java.util.HexFormat;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * 
@@ -42,67 +51,217 @@ public class util {
 	/**
 	 * Compute the scalar multiplication of the point G on the curve by the scalar s.
 	 * Reference: Elliptic Curve slides - "Exponentiation" algorithm (Elliptic curve version)
+	 * Runs in extended coordinates (ExtendedPoint), so the only inversion is the one
+	 * converting the result back to affine. Multiples of the generator use the
+	 * precomputed tables of FixedBase, any other point a w-NAF of s (WNAF).
 	 * @param G a point on the curve
 	 * @param s the scalar factor
 	 * @return the result of s * G
 	 */
     public static Point pointMultiplyByScalar(Point G, BigInteger s) {
         if (s.equals(BigInteger.ZERO)) return new Point();
+        if (s.equals(BigInteger.ONE)) return G;
+        if (G.equals(Point.G)) return FixedBase.multiply(s);
+        return WNAF.multiply(G, s);
+    }
 
-        if (s.signum() == -1) {
-            s = s.negate();
-            G = G.opposite();
-        }
+	/**
+	 * Compute a * P + b * Q with a single shared chain of doublings (Straus/Shamir's trick),
+	 * as needed by signature verification.
+	 * @param P a point on the curve
+	 * @param a the scalar factor of P
+	 * @param Q a point on the curve
+	 * @param b the scalar factor of Q
+	 * @return the result of a * P + b * Q
+	 */
+    public static Point pointMultiplyByScalars(Point P, BigInteger a, Point Q, BigInteger b) {
+        return WNAF.multiply(P, a, Q, b);
+    }
 
-        String binaryS = s.toString(2);
-        Point P = G;
-        if (binaryS.length() == 1) return P;
-        for (int i = 1; i < binaryS.length(); i++) {
-            P = P.sum(P);
-            if (binaryS.charAt(i) == '1') {
-                P = P.sum(G);
-            }
-        }
-        return P;
+	/**
+	 * Verify a signature (z, h) over the message m under the public key V:
+	 * U = z*G + h*V, then the signature is good if KMACXOF256(U_x, m, 512, "T") equals h.
+	 * @param m the signed data
+	 * @param sig the signature, z in the first 56 bytes and h after it
+	 * @param V the public key
+	 * @return true if the signature matches, false if not or if sig is malformed
+	 */
+    public static boolean verifySignature(byte[] m, byte[] sig, Point V) {
+        return V != null && verifySignature(m, sig, V, null);
+    }
+
+	/**
+	 * Like verifySignature(m, sig, V) for a key from the PublicKeyCache, whose
+	 * precomputed table is used for h*V.
+	 */
+    public static boolean verifySignature(byte[] m, byte[] sig, PublicKeyCache.Entry key) {
+        return key != null && verifySignature(m, sig, null, key);
+    }
+
+    private static boolean verifySignature(byte[] m, byte[] sig, Point V, PublicKeyCache.Entry key) {
+        final int zLen = 56;
+        if (m == null || sig == null || sig.length <= zLen) return false;
+
+        BigInteger z = new BigInteger(Arrays.copyOfRange(sig, 0, zLen));
+        BigInteger h = new BigInteger(Arrays.copyOfRange(sig, zLen, sig.length));
+
+        Point U = key != null ? key.multiplyWithG(z, h) : pointMultiplyByScalars(Point.G, z, V, h); // z*G + h*V
+
+        BigInteger h_p = bytesToBigInt(Keccak.KMACXOF256(U.modPtoBytes(), m, 512, Main.$T)); // U_x mod p
+        return h.equals(h_p);
     }
     
-    /**
-     * 
-     * First 8 bytes record the length of the X cord and Y cord,
+	/** Size of a compressed point: x as 56 little-endian bytes, then a byte holding the parity of y in its top bit */
+	public static final int POINT_BYTES = FieldElement.BYTES + 1;
+
+	/**
+	 * Serializes a point in the fixed 57-byte compressed form (pointEncode).
+	 * Older files hold the variable-length form below, which pointDataUnzip still reads:
+	 * 
+	 * First 8 bytes record the length of the X cord and Y cord,
 	 * X length are in bytes [0,4), Y length [4,8)
 	 * from [8, 8+X length) are the bytes for the X cord
 	 * then [8+X length, 8+X length + Y length)
 	 * 8+X length + Y length should equal pointData.length
-     * 
-     *  [xLen][yLen][   X   ][   Y   ]  <- Array
-     *   4-B   4-B   xLen-B   yLen-B    <- Bytes
-     * @param pt The Point
-     * @return Byte array of the Point data
-     */
+	 * 
+	 *  [xLen][yLen][   X   ][   Y   ]  <- Array
+	 *   4-B   4-B   xLen-B   yLen-B    <- Bytes
+	 * @param pt The Point
+	 * @return Byte array of the Point data
+	 */
 	public static byte[] pointDataZip(final Point pt) {
-		byte[] xBytes = pt.getXBytes();
-		byte[] yBytes = pt.getYBytes();
-
-		byte[] xBytesLength = numberToByteArray(xBytes.length);
-		byte[] yBytesLength = numberToByteArray(yBytes.length);
-
-		return concatBytes(xBytesLength, yBytesLength, xBytes, yBytes);
+		return pointEncode(pt);
 	}
 	
+	/**
+	 * Reads a point in either form: 57 bytes are the compressed form, anything else
+	 * the legacy length-prefixed form.
+	 * @param pointData a serialized point
+	 * @return the point, or null if pointData is not a point on the curve
+	 */
 	public static Point pointDataUnzip(byte[] pointData) {
-		try {
-			int[] lengths = readZipedPointInfo(pointData);
-			int xLen = lengths[0], yLen = lengths[1];
-			
-			int xBytesStart = 8;
-			int yBytesStart = xBytesStart + xLen;
-			int theEnd = yBytesStart + yLen;
+		if (pointData == null) return null;
+		if (pointData.length == POINT_BYTES) {
+			Point pt = pointDecode(pointData, 0);
+			if (pt != null) return pt;
+		}
+		return legacyPointLength(pointData, 0, pointData.length) == pointData.length
+				? legacyPointDecode(pointData, 0) : null;
+	}
 	
-			byte[] xBytes = Arrays.copyOfRange(pointData, xBytesStart, yBytesStart);
-			byte[] yBytes = Arrays.copyOfRange(pointData, yBytesStart, theEnd);
-			
-			return new Point(new BigInteger(xBytes),new BigInteger(yBytes));
-		} catch(Exception e) { return null;}
+	/**
+	 * @param pt a point on the curve
+	 * @return its 57-byte compressed encoding
+	 */
+	public static byte[] pointEncode(final Point pt) {
+		byte[] out = new byte[POINT_BYTES];
+		pointEncode(pt, out, 0);
+		return out;
+	}
+	
+	/**
+	 * Writes the 57-byte compressed encoding of pt at out[off]: x mod p little-endian in
+	 * bytes [0, 56), the least significant bit of y as the top bit of byte 56.
+	 */
+	public static void pointEncode(final Point pt, byte[] out, int off) {
+		new FieldElement(pt.getX()).getBytes(out, off);
+		out[off + FieldElement.BYTES] = (byte) (pt.getY().mod(Point.p).testBit(0) ? 0x80 : 0);
+	}
+	
+	/**
+	 * Reads a compressed point straight out of data, no copy of the slice is made.
+	 * The encoding is rejected unless it is the unique one of a point on the curve.
+	 * @param data holds the encoding at off
+	 * @param off where it starts
+	 * @return the point, or null if data holds no valid encoding there
+	 */
+	public static Point pointDecode(byte[] data, int off) {
+		if (off < 0 || data.length - off < POINT_BYTES) return null;
+		int last = data[off + FieldElement.BYTES] & 0xFF;
+		FieldElement x = new FieldElement();
+		if ((last & 0x7F) != 0 | !x.setBytes(data, off)) return null;
+		return decompress(x, last != 0);
+	}
+	
+	/**
+	 * Like pointDecode(byte[], int), reading at buf's position and moving it past the
+	 * point when one is read.
+	 */
+	public static Point pointDecode(ByteBuffer buf) {
+		int off = buf.position();
+		if (buf.remaining() < POINT_BYTES) return null;
+		int last = buf.get(off + FieldElement.BYTES) & 0xFF;
+		FieldElement x = new FieldElement();
+		if ((last & 0x7F) != 0 | !x.setBytes(buf, off)) return null;
+		Point pt = decompress(x, last != 0);
+		if (pt != null) buf.position(off + POINT_BYTES);
+		return pt;
+	}
+	
+	/**
+	 * Decodes count compressed points stored back to back from data[off]. Each one costs a
+	 * single fixed exponentiation (Point.decompress), the inversion of its denominator
+	 * being folded into the square root, so there is no per-point inversion left to batch.
+	 * @return the points in order, null where an encoding is invalid
+	 */
+	public static Point[] pointDecode(byte[] data, int off, int count) {
+		if (off < 0 || count < 0 || (long) count * POINT_BYTES > data.length - off)
+			throw new IllegalArgumentException(count + " points do not fit at offset " + off);
+		Point[] pts = new Point[count];
+		for (int i = 0; i < count; i++)
+			pts[i] = pointDecode(data, off + i * POINT_BYTES);
+		return pts;
+	}
+	
+	/**
+	 * Like pointDecode(byte[], int, int) from buf's position, which moves past all count points.
+	 */
+	public static Point[] pointDecode(ByteBuffer buf, int count) {
+		if (count < 0 || (long) count * POINT_BYTES > buf.remaining())
+			throw new IllegalArgumentException(count + " points do not fit in " + buf.remaining() + " bytes");
+		Point[] pts = new Point[count];
+		for (int i = 0; i < count; i++) {
+			int next = buf.position() + POINT_BYTES;
+			pts[i] = pointDecode(buf);
+			buf.position(next);
+		}
+		return pts;
+	}
+	
+	// y from x through Point(x, p, lsb); null if x is on no point, or if lsb is set on y = 0
+	private static Point decompress(FieldElement x, boolean lsb) {
+		Point pt = new Point(x.toBigInteger(), Point.p, lsb);
+		if (pt.getY() == null || pt.getY().testBit(0) != lsb) return null;
+		return pt;
+	}
+	
+	/**
+	 * Length of the point at data[off] if it is in the legacy form: a plausible header
+	 * (both coordinates 1 to 57 bytes, within len) over a point on the curve.
+	 * @return 8 + xLen + yLen, or -1 if the bytes there are not a legacy point
+	 */
+	static int legacyPointLength(byte[] data, int off, int len) {
+		if (len - off < 8) return -1;
+		int xLen = bytesToInt(data, off), yLen = bytesToInt(data, off + 4);
+		if (xLen < 1 || xLen > POINT_BYTES || yLen < 1 || yLen > POINT_BYTES || 8 + xLen + yLen > len - off)
+			return -1;
+		return legacyPointDecode(data, off) != null ? 8 + xLen + yLen : -1;
+	}
+	
+	// the legacy form at data[off], BigIntegers read in place
+	private static Point legacyPointDecode(byte[] data, int off) {
+		int xLen = bytesToInt(data, off), yLen = bytesToInt(data, off + 4);
+		Point pt = new Point(new BigInteger(data, off + 8, xLen), new BigInteger(data, off + 8 + xLen, yLen));
+		return pt.isOnCurve() ? pt : null;
+	}
+	
+	/**
+	 * Length of the point that starts an elliptic cryptogram: the legacy form if its
+	 * header is plausible and describes a point on the curve, otherwise POINT_BYTES.
+	 */
+	public static int cryptogramPointLength(byte[] theGram) {
+		int legacy = legacyPointLength(theGram, 0, theGram.length);
+		return legacy > 0 ? legacy : POINT_BYTES;
 	}
 	
 	/**
@@ -126,6 +285,232 @@ public class util {
 		return theBytes;
 	}
 	
+	/** Size of each memory-mapped window of a file being absorbed */
+	static final long MAP_WINDOW = 64L << 20;
+	
+	/**
+	 * Absorbs the whole file at path into the sponge, mapping it MAP_WINDOW bytes at a time.
+	 * The mapped windows are read by the sponge in place, nothing is copied to the heap.
+	 * @param c a context from one of the Keccak _init functions
+	 * @param path the file to absorb
+	 * @throws IOException if the file cannot be opened or read
+	 */
+	public static void absorbFile(final Keccak.sha3_ctx_t c, final String path) throws IOException {
+		try (FileChannel ch = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+			long size = ch.size();
+			for (long pos = 0; pos < size; pos += MAP_WINDOW) {
+				MappedByteBuffer window = ch.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(MAP_WINDOW, size - pos));
+				Keccak.sponge_update(c, window);
+			}
+		}
+	}
+	
+	/**
+	 * KMACXOF256 of the contents of a file, streamed from disk instead of loaded into memory.
+	 * Meant for hashes and MACs, so the (K, S) prefix goes through the Keccak prefix cache.
+	 * @param K the key
+	 * @param path the file holding the message X
+	 * @param L output length in bits
+	 * @param S the customization string
+	 * @return the L bit output, or null if the file could not be read
+	 */
+	public static byte[] fileKMACXOF256(final byte[] K, final String path, final int L, final byte[] S) {
+		Keccak.sha3_ctx_t c = Keccak.KMACXOF256_init_cached(K, S);
+		try {absorbFile(c, path);}
+		catch (IOException easy) {System.out.println(Main.FILE_NOT_FOUND); return null;}
+		
+		byte[] out = new byte[L / 8];
+		Keccak.sponge_squeeze(c, out, 0, out.length);
+		return out;
+	}
+	
+	/**
+	 * The two sponges of a symmetric cryptogram z || t || c, the one place its construction is spelled out:
+	 * (ke || ka) <- KMACXOF256(z || pw, "", 1024, "S"), c <- KMACXOF256(ke, "", |m|, "SKE") xor m,
+	 * t <- KMACXOF256(ka, m, 512, "SKA"), with ke the first 256 bits of the output and ka the next 256.
+	 * Every encrypt and decrypt, in memory or streaming, and the encrypted private key files go through it.
+	 * @param z the 512 bit random nonce
+	 * @param pw the passphrase
+	 * @return {keystream, tag}: the keystream sponge has absorbed "" and is ready to squeeze c's pad,
+	 *         the tag sponge absorbs the plaintext next
+	 */
+	static Keccak.sha3_ctx_t[] symmetricSponges(final byte[] z, final byte[] pw) {
+		final int byteLen = 512 / 8;
+		byte[] ke_ka = Keccak.KMACXOF256(concatBytes(z, pw), Main.$NULL, 1024, Main.$S);
+		Keccak.sha3_ctx_t keystream = Keccak.KMACXOF256_init(Arrays.copyOfRange(ke_ka, 0, byteLen/2), Main.$SKE);
+		Keccak.sponge_update(keystream, Main.$NULL, 0, Main.$NULL.length);
+		Keccak.sha3_ctx_t tag = Keccak.KMACXOF256_init(Arrays.copyOfRange(ke_ka, byteLen/2, byteLen), Main.$SKA);
+		return new Keccak.sha3_ctx_t[] {keystream, tag};
+	}
+	
+	/**
+	 * Symmetrically encrypts m under pw, the in-memory counterpart of symmetricEncryptFile.
+	 * @param m the plaintext
+	 * @param pw the passphrase
+	 * @return the cryptogram z || t || c
+	 */
+	public static byte[] symmetricEncrypt(final byte[] m, final byte[] pw) {
+		final int byteLen = 512 / 8;
+		byte[] gram = new byte[2 * byteLen + m.length];
+		byte[] z = new byte[byteLen];
+		new SecureRandom().nextBytes(z);
+		System.arraycopy(z, 0, gram, 0, byteLen);
+		
+		Keccak.sha3_ctx_t[] sponges = symmetricSponges(z, pw);
+		Keccak.sponge_squeeze(sponges[0], gram, 2 * byteLen, m.length);
+		for (int i = 0; i < m.length; i++) gram[2 * byteLen + i] ^= m[i];
+		Keccak.sponge_update(sponges[1], m, 0, m.length);
+		Keccak.sponge_squeeze(sponges[1], gram, byteLen, byteLen);
+		return gram;
+	}
+	
+	/**
+	 * Decrypts the symmetric cryptogram z || t || c under pw, the in-memory counterpart of symmetricDecryptFile.
+	 * @param gram the cryptogram
+	 * @param pw the passphrase
+	 * @return the plaintext, or null if the tag does not match (wrong passphrase)
+	 * @throws IllegalArgumentException if gram is too short to be a cryptogram
+	 */
+	public static byte[] symmetricDecrypt(final byte[] gram, final byte[] pw) {
+		final int byteLen = 512 / 8;
+		if (gram.length < 2 * byteLen)
+			throw new IllegalArgumentException(Main.FILE_NOT_ENCRYPTED);
+		
+		Keccak.sha3_ctx_t[] sponges = symmetricSponges(Arrays.copyOfRange(gram, 0, byteLen), pw);
+		byte[] m = new byte[gram.length - 2 * byteLen];
+		Keccak.sponge_squeeze(sponges[0], m, 0, m.length);
+		for (int i = 0; i < m.length; i++) m[i] ^= gram[2 * byteLen + i];
+		Keccak.sponge_update(sponges[1], m, 0, m.length);
+		byte[] t_p = new byte[byteLen];
+		Keccak.sponge_squeeze(sponges[1], t_p, 0, byteLen);
+		return Arrays.equals(t_p, Arrays.copyOfRange(gram, byteLen, 2 * byteLen)) ? m : null;
+	}
+	
+	/** Size of the plaintext / ciphertext chunks the streaming cipher works through */
+	static final int CIPHER_CHUNK = 1 << 20;
+	
+	/**
+	 * Symmetrically encrypts the file at inPath under pw, writing the cryptogram z || t || c to outPath.
+	 * Same format as the in-memory version, but the file is read in CIPHER_CHUNK pieces: the KMACXOF256
+	 * keystream is squeezed alongside, XORed in place, the tag absorbs the plaintext as it goes and the
+	 * ciphertext is written out straight away. The tag slot is filled in once the whole file is read.
+	 * @param inPath the plaintext file
+	 * @param outPath where to write the cryptogram
+	 * @param pw the passphrase
+	 * @throws IOException if either file cannot be read or written
+	 */
+	public static void symmetricEncryptFile(final String inPath, final String outPath, final byte[] pw) throws IOException {
+		final int byteLen = 512 / 8;
+		byte[] z = new byte[byteLen];
+		new SecureRandom().nextBytes(z);
+		
+		Keccak.sha3_ctx_t[] sponges = symmetricSponges(z, pw);
+		Keccak.sha3_ctx_t keystream = sponges[0], tag = sponges[1];
+		
+		Path out = Paths.get(outPath).toAbsolutePath();
+		Path part = createPart(out);
+		try (FileChannel in = FileChannel.open(Paths.get(inPath), StandardOpenOption.READ);
+			 FileChannel gram = FileChannel.open(part, StandardOpenOption.WRITE)) {
+			writeFully(gram, ByteBuffer.wrap(z), 0);
+			long pos = 2 * byteLen; // t goes in between, once it is known
+			
+			byte[] buf = new byte[CIPHER_CHUNK], ks = new byte[CIPHER_CHUNK];
+			int n;
+			while ((n = readFully(in, buf)) > 0) {
+				Keccak.sponge_update(tag, buf, 0, n);
+				Keccak.sponge_squeeze(keystream, ks, 0, n);
+				for (int i = 0; i < n; i++) buf[i] ^= ks[i];
+				pos += writeFully(gram, ByteBuffer.wrap(buf, 0, n), pos);
+			}
+			
+			byte[] t = new byte[byteLen];
+			Keccak.sponge_squeeze(tag, t, 0, byteLen);
+			writeFully(gram, ByteBuffer.wrap(t), byteLen);
+		} catch (IOException | RuntimeException e) {
+			Files.deleteIfExists(part);
+			throw e;
+		}
+		Files.move(part, out, StandardCopyOption.REPLACE_EXISTING);
+	}
+	
+	/**
+	 * Decrypts the symmetric cryptogram z || t || c at inPath under pw, streaming the plaintext to outPath.
+	 * The plaintext goes to a temporary file next to outPath and is only moved into place once the tag checks out.
+	 * @param inPath the cryptogram file
+	 * @param outPath where to write the plaintext
+	 * @param pw the passphrase
+	 * @return true if the tag matched and outPath was written, false if the passphrase is wrong
+	 * @throws IOException if either file cannot be read or written, or inPath is too short to be a cryptogram
+	 */
+	public static boolean symmetricDecryptFile(final String inPath, final String outPath, final byte[] pw) throws IOException {
+		final int byteLen = 512 / 8;
+		Path out = Paths.get(outPath).toAbsolutePath();
+		Path part = createPart(out);
+		boolean match = false;
+		try (FileChannel gram = FileChannel.open(Paths.get(inPath), StandardOpenOption.READ);
+			 FileChannel plain = FileChannel.open(part, StandardOpenOption.WRITE)) {
+			byte[] z = new byte[byteLen], t = new byte[byteLen];
+			if (readFully(gram, z) < byteLen || readFully(gram, t) < byteLen)
+				throw new IOException(Main.FILE_NOT_ENCRYPTED);
+			
+			Keccak.sha3_ctx_t[] sponges = symmetricSponges(z, pw);
+			Keccak.sha3_ctx_t keystream = sponges[0], tag = sponges[1];
+			
+			byte[] buf = new byte[CIPHER_CHUNK], ks = new byte[CIPHER_CHUNK];
+			long pos = 0;
+			int n;
+			while ((n = readFully(gram, buf)) > 0) {
+				Keccak.sponge_squeeze(keystream, ks, 0, n);
+				for (int i = 0; i < n; i++) buf[i] ^= ks[i];
+				Keccak.sponge_update(tag, buf, 0, n);
+				pos += writeFully(plain, ByteBuffer.wrap(buf, 0, n), pos);
+			}
+			
+			byte[] t_p = new byte[byteLen];
+			Keccak.sponge_squeeze(tag, t_p, 0, byteLen);
+			match = Arrays.equals(t_p, t);
+		} finally {
+			if (!match) Files.deleteIfExists(part);
+		}
+		if (!match) return false;
+		Files.move(part, out, StandardCopyOption.REPLACE_EXISTING);
+		return true;
+	}
+	
+	/**
+	 * Creates an empty, uniquely named file next to out to write into before moving it over out.
+	 * Unlike Files.createTempFile (always 0600) it gets the default permissions, umask applied,
+	 * as the FileOutputStream that wrote out directly did, and Files.move keeps them.
+	 * @return the new file
+	 */
+	static Path createPart(final Path out) throws IOException {
+		while (true) {
+			Path part = out.resolveSibling("." + out.getFileName() + "." + Long.toUnsignedString(ThreadLocalRandom.current().nextLong(), 36) + ".part");
+			try {return Files.createFile(part);}
+			catch (FileAlreadyExistsException taken) {}
+		}
+	}
+	
+	/**
+	 * Reads from the channel until buf is full or the end of the file is reached.
+	 * @return the number of bytes read, 0 at the end of the file
+	 */
+	static int readFully(final FileChannel ch, final byte[] buf) throws IOException {
+		ByteBuffer bb = ByteBuffer.wrap(buf);
+		while (bb.hasRemaining() && ch.read(bb) >= 0);
+		return bb.position();
+	}
+	
+	/**
+	 * Writes all of src to the channel starting at the given file position.
+	 * @return the number of bytes written
+	 */
+	static int writeFully(final FileChannel ch, final ByteBuffer src, long pos) throws IOException {
+		int n = src.remaining();
+		while (src.hasRemaining()) pos += ch.write(src, pos);
+		return n;
+	}
+	
 	public static void writeByteData(final String path, final byte[] theBytes) {
 		try (FileOutputStream fos = new FileOutputStream(path)) {
 			   fos.write(theBytes);
@@ -134,35 +519,40 @@ public class util {
 			}
 	}
 	
+	/**
+	 * Encrypts a private key under its passphrase, as written by key generation:
+	 * the symmetric cryptogram z || t || c of s's big-endian bytes (symmetricSponges)
+	 * @param s the private key
+	 * @param pw the passphrase
+	 * @return the cryptogram z || t || c
+	 */
+	public static byte[] encryptPrivateKey(BigInteger s, byte[] pw) {
+		return symmetricEncrypt(s.toByteArray(), pw);
+	}
+	
 	/**
 	 * Unpacks a Elliptic-Point Cryptogram into its component parts
 	 * @param theGram
 	 * @return {Z, T, C}
 	 */
 	public static byte[][] ellipticCryptogramOpener(byte[] theGram) {
-//		if (theGram.length < 72) return null;
 		byte[] z,t,c;
-		try {
-			int[] pointLen = readZipedPointInfo(theGram);
-			int zLen = 8 + pointLen[0] + pointLen[1];
-			
-			int
-				z_srt =     0,  z_end = zLen,
-				t_srt = z_end,  t_end = t_srt + 64,
-				c_srt = t_end,  c_end = theGram.length;
-			
-			
-			
-			
-			z = Arrays.copyOfRange(theGram, z_srt, z_end);
-			t = Arrays.copyOfRange(theGram, t_srt, t_end);
-			c = Arrays.copyOfRange(theGram, c_srt, c_end);
-		}
-		catch(Exception e) {
+		int zLen = cryptogramPointLength(theGram);
+		
+		int
+			z_srt =     0,  z_end = zLen,
+			t_srt = z_end,  t_end = t_srt + 64,
+			c_srt = t_end,  c_end = theGram.length;
+		
+		if (t_end > c_end) {
 			System.out.println(Main.FILE_NOT_ENCRYPTED);
 			return null;
 		}
-
+		
+		z = Arrays.copyOfRange(theGram, z_srt, z_end);
+		t = Arrays.copyOfRange(theGram, t_srt, t_end);
+		c = Arrays.copyOfRange(theGram, c_srt, c_end);
+		
 		return new byte[][] {z, t, c};
 	}
 	
@@ -261,6 +651,15 @@ public class util {
 		return number;
 	}
 	
+	// the 4 big-endian bytes at theBytes[startIndex], read in place
+	public static int bytesToInt(byte[] theBytes, int startIndex) {
+		int number = 0;
+		for (int i = startIndex; i < startIndex + 4; i++) {
+			number = (number << 8) + (theBytes[i] & 0xFF);
+		}
+		return number;
+	}
+	
 	public static long bytesToLong(byte[] state, int startIndex) {
 		long l = 0;
 		for (int i = startIndex; i < startIndex + 8; i++) {